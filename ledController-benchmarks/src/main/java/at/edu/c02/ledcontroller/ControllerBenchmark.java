@@ -0,0 +1,52 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller paths against an in-process {@link StubApiService}: group filtering and a full showTime frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerBenchmark {
+
+    @Param({"8", "1000"})
+    public int lightCount;
+
+    private LedControllerImpl controller;
+    private int second;
+
+    @Setup
+    public void setUp() {
+        // every light grouped for the 8-light case, one in eight otherwise
+        controller = new LedControllerImpl(new StubApiService(lightCount, lightCount == 8 ? 1 : 8));
+    }
+
+    @Benchmark
+    public JSONArray getGroupLeds() throws IOException {
+        return controller.getGroupLeds();
+    }
+
+    @Benchmark
+    public void showTimeFrame() throws IOException {
+        second = (second + 1) % 60;
+        controller.showTime(10, 15, second);
+    }
+}
@@ -0,0 +1,85 @@
+package at.edu.c02.ledcontroller;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregate setLed throughput of 1 to 64 groups sharing one {@link JdkHttpTransport} against
+ * {@link HasuraSimulator}. Every group has its own limiter of {@value #RATE_PER_GROUP} requests/s, as the
+ * backend budgets each group separately, so the {@code writes} counter only grows with the group count if
+ * the groups really run in parallel on the shared connection pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupScalingBenchmark {
+    private static final double RATE_PER_GROUP = 50.0;
+    private static final int WRITES_PER_ROUND = 5;
+
+    @Param({"1", "4", "16", "64"})
+    public int groups;
+
+    private HasuraSimulator simulator;
+    private LedGroupRegistry registry;
+    private int round;
+
+    /**
+     * Reports LED writes instead of rounds, so the score is comparable across group counts.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Writes {
+        public long writes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            writes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        // a few milliseconds per request, like a nearby backend rather than bare loopback
+        simulator = new HasuraSimulator(64, 8).latency(HasuraSimulator.Latency.fixed(2));
+        registry = new LedGroupRegistry(simulator.baseUrl(), new JdkHttpTransport(),
+                () -> new RateLimiter(RATE_PER_GROUP, 1), new ClientMetrics());
+        for (int g = 0; g < groups; g++) {
+            registry.controller("group-" + g);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        simulator.close();
+    }
+
+    @Benchmark
+    public void round(Writes counter) throws IOException, InterruptedException {
+        // a new color every round, or the shadow state would skip the writes
+        int color = 1 + round++ % 0xFFFFFE;
+        registry.forEachConcurrently((groupId, controller) -> {
+            for (int i = 0; i < WRITES_PER_ROUND; i++) {
+                controller.setLed(1 + i, color);
+            }
+        });
+        counter.writes += (long) groups * WRITES_PER_ROUND;
+    }
+}
@@ -0,0 +1,200 @@
+package at.edu.c02.ledcontroller;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * One setLight round trip against a local stub server: the per-call {@link HttpURLConnection} code path
+ * {@link ApiServiceImpl} used before versus the pooled {@link JdkHttpTransport}, sequential and with 8 client
+ * threads, over plain HTTP and over TLS with a throwaway self-signed certificate. Loopback hides network
+ * latency, so this shows client overhead rather than real network gains.
+ * <p>
+ * The old path is not the per-call handshake it looks like: {@link HttpURLConnection} keeps drained connections
+ * alive as well, also over TLS. Per request, {@link HttpClient} then costs about three times as much here, mostly
+ * for handing each exchange between the caller and its selector thread (a same-thread executor only won ~30%).
+ * What the transport buys is a bounded shared pool, per-call timeouts and HTTP/2 on servers that offer it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+// without TCP_NODELAY the stub's split header/body writes hit delayed ACKs and cap both paths at ~25 req/s
+@Fork(value = 2, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class HttpTransportBenchmark {
+    private static final byte[] RESPONSE = "{\"update_lights_by_pk\":{\"id\":1,\"color\":\"#ff0000\",\"on\":true}}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BODY = "{\"id\":1,\"color\":\"#ff0000\",\"state\":true}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final Map<String, String> HEADERS = Map.of("X-Hasura-Group-ID", "test",
+            "Content-Type", "application/json");
+
+    @Param({"http", "https"})
+    public String scheme;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private URI uri;
+    private URL url;
+    private HttpTransport transport;
+    private SSLSocketFactory legacySocketFactory;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        SSLContext tls = null;
+        if (scheme.equals("https")) {
+            tls = selfSignedContext();
+            HttpsServer https = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            https.setHttpsConfigurator(new HttpsConfigurator(tls));
+            server = https;
+            legacySocketFactory = tls.getSocketFactory();
+        } else {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        }
+        server.createContext("/setLight", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            exchange.getResponseBody().write(RESPONSE);
+            exchange.close();
+        });
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverExecutor);
+        server.start();
+        uri = URI.create(scheme + "://127.0.0.1:" + server.getAddress().getPort() + "/setLight");
+        url = uri.toURL();
+        if (tls == null) {
+            transport = new JdkHttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2));
+        } else {
+            // same settings as the default constructor, but trusting the stub's certificate
+            transport = new JdkHttpTransport(HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofSeconds(2))
+                    .sslContext(tls)
+                    .build(), Duration.ofSeconds(2));
+        }
+    }
+
+    // keytool is the only way to get a certificate without extra dependencies
+    private static SSLContext selfSignedContext() throws Exception {
+        Path dir = Files.createTempDirectory("benchmark-tls");
+        Path keystore = dir.resolve("stub.p12");
+        char[] password = "benchmark".toCharArray();
+        Process keytool = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "stub", "-keyalg", "EC", "-dname", "CN=127.0.0.1", "-ext", "san=ip:127.0.0.1",
+                "-validity", "1", "-storetype", "PKCS12", "-keystore", keystore.toString(),
+                "-storepass", new String(password)).inheritIO().start();
+        if (keytool.waitFor() != 0) {
+            throw new IOException("keytool failed with " + keytool.exitValue());
+        }
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore)) {
+            store.load(in, password);
+        }
+        Files.delete(keystore);
+        Files.delete(dir);
+
+        KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(store, password);
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(store);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+        return context;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int legacyConnection() throws IOException {
+        return legacyRequest();
+    }
+
+    @Benchmark
+    public int pooledTransport() throws IOException {
+        return pooledRequest();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int legacyConnectionConcurrent() throws IOException {
+        return legacyRequest();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int pooledTransportConcurrent() throws IOException {
+        return pooledRequest();
+    }
+
+    private int pooledRequest() throws IOException {
+        try (TransportResponse response = transport.send("PUT", uri, HEADERS, BODY)) {
+            response.readBody();
+            return response.statusCode();
+        }
+    }
+
+    // The request code ApiServiceImpl used before the transport abstraction, without the rate-limit sleep
+    private int legacyRequest() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (connection instanceof HttpsURLConnection https) {
+            https.setSSLSocketFactory(legacySocketFactory);
+        }
+        connection.setRequestMethod("PUT");
+        connection.setRequestProperty("X-Hasura-Group-ID", "test");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.getOutputStream().write(BODY);
+
+        int responseCode = connection.getResponseCode();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+        while (reader.read() != -1) {
+            // drain like the old code did
+        }
+        return responseCode;
+    }
+}
@@ -0,0 +1,58 @@
+package at.edu.c02.ledcontroller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-LED helpers used on every clock frame: color mixing and time-to-index mapping.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+    private LedControllerImpl controller;
+    private int tick;
+
+    @Setup
+    public void setUp() {
+        controller = new LedControllerImpl(new StubApiService(8, 1));
+    }
+
+    @Benchmark
+    public String mixColors() {
+        tick++;
+        return LedController.mixColors((tick & 4) != 0, (tick & 2) != 0, (tick & 1) != 0);
+    }
+
+    @Benchmark
+    public int mixRgb() {
+        tick++;
+        return LedController.mixRgb((tick & 4) != 0, (tick & 2) != 0, (tick & 1) != 0);
+    }
+
+    @Benchmark
+    public void mapHourToIndex(Blackhole blackhole) {
+        tick++;
+        blackhole.consume(controller.mapHourToIndex(tick % 24, tick % 60, 8));
+    }
+
+    @Benchmark
+    public void mapToIndex(Blackhole blackhole) {
+        tick++;
+        blackhole.consume(controller.mapToIndex(tick % 60, 60, 8));
+    }
+}
@@ -0,0 +1,69 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a {@code getLights} response inside {@link ApiServiceImpl}, with a transport that returns
+ * a canned body and a rate limiter that never waits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+
+    @Param({"8", "1000", "50000"})
+    public int lightCount;
+
+    private ApiServiceImpl apiService;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("{\"lights\":[");
+        for (int id = 0; id < lightCount; id++) {
+            if (id > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(id)
+                    .append(",\"color\":\"#").append(String.format("%06x", id * 0x10101 & 0xFFFFFF)).append('"')
+                    .append(",\"on\":").append(id % 2 == 0)
+                    .append(",\"groupId\":").append(id % 8 == 0 ? "1" : "null")
+                    .append(",\"groupByGroup\":").append(id % 8 == 0 ? "{\"name\":\"G\"}" : "null")
+                    .append('}');
+        }
+        byte[] payload = sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        HttpTransport transport = (method, uri, headers, body) ->
+                new TransportResponse(200, Map.of(), new ByteArrayInputStream(payload));
+        apiService = new ApiServiceImpl("http://stub", transport, new RateLimiter(1e12, Integer.MAX_VALUE));
+    }
+
+    @Benchmark
+    public JSONObject jsonTree() throws IOException {
+        return apiService.getLights();
+    }
+
+    @Benchmark
+    public List<Light> streamingGrouped() throws IOException {
+        return apiService.listLights(true);
+    }
+}
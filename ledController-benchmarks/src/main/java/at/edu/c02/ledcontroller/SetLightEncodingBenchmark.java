@@ -0,0 +1,49 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building one setLight request body: through {@link JSONObject} versus filling the reusable fixed-length
+ * buffer of {@link ApiServiceImpl#writeLight}. Run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetLightEncodingBenchmark {
+
+    private final byte[] body = ApiServiceImpl.newSetLightBody();
+    private int id;
+
+    @Benchmark
+    public byte[] jsonObject() {
+        id = (id + 1) & 1023;
+        return new JSONObject()
+                .put("id", id)
+                .put("color", RgbColor.toHex(id * 4099))
+                .put("state", (id & 1) == 0)
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] reusedBuffer() {
+        id = (id + 1) & 1023;
+        ApiServiceImpl.encodeSetLight(body, id, id * 4099, (id & 1) == 0);
+        return body;
+    }
+}
@@ -0,0 +1,62 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the {@code update_lights_many} document for one 8-LED frame, as sent for every replayed or
+ * animated frame: through {@link JSONObject} versus filling the pooled fixed-length buffer of
+ * {@link ApiServiceImpl#setLights}. Run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetLightsEncodingBenchmark {
+    private static final String MUTATION =
+            "mutation SetLights($updates: [lights_updates!]!) { update_lights_many(updates: $updates) { affected_rows } }";
+
+    private final Map<Integer, LedState> frame = new LinkedHashMap<>();
+    private final byte[] body = ApiServiceImpl.newBatchBody(8);
+
+    public SetLightsEncodingBenchmark() {
+        for (int i = 0; i < 8; i++) {
+            frame.put(46 + i, new LedState(i * 0x202020, i % 2 == 0));
+        }
+    }
+
+    @Benchmark
+    public byte[] jsonObject() {
+        JSONArray updates = new JSONArray();
+        frame.forEach((id, state) -> updates.put(new JSONObject()
+                .put("where", new JSONObject().put("id", new JSONObject().put("_eq", id)))
+                .put("_set", new JSONObject().put("color", state.color()).put("on", state.on()))));
+        return new JSONObject()
+                .put("query", MUTATION)
+                .put("variables", new JSONObject().put("updates", updates))
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] reusedBuffer() {
+        ApiServiceImpl.encodeBatch(body, frame);
+        return body;
+    }
+}
@@ -0,0 +1,66 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process {@link ApiService} with a fixed group of lights. Writes are only counted, so benchmarks
+ * measure the controller and not the network.
+ */
+class StubApiService implements ApiService {
+    private final JSONObject lightsResponse;
+    private final List<Light> lights;
+    private final List<Light> groupLights;
+    long writes;
+
+    StubApiService(int lightCount, int groupEvery) {
+        JSONArray array = new JSONArray();
+        lights = new ArrayList<>(lightCount);
+        for (int id = 0; id < lightCount; id++) {
+            boolean grouped = id % groupEvery == 0;
+            array.put(new JSONObject()
+                    .put("id", id)
+                    .put("color", "#000000")
+                    .put("on", false)
+                    .put("groupByGroup", grouped ? new JSONObject().put("name", "G") : JSONObject.NULL));
+            lights.add(new Light(id, 0, false, grouped));
+        }
+        lightsResponse = new JSONObject().put("lights", array);
+        groupLights = lights.stream().filter(Light::grouped).toList();
+    }
+
+    @Override
+    public JSONObject getLights() {
+        return lightsResponse;
+    }
+
+    @Override
+    public List<Light> listLights(boolean groupedOnly) {
+        return groupedOnly ? groupLights : lights;
+    }
+
+    @Override
+    public JSONObject getLight(int id) {
+        return new JSONObject().put("lights", new JSONArray().put(lightsResponse.getJSONArray("lights").get(id)));
+    }
+
+    @Override
+    public JSONObject setLight(int id, String color, boolean state) {
+        writes++;
+        return new JSONObject();
+    }
+
+    @Override
+    public void setLights(Map<Integer, LedState> states) {
+        writes += states.size();
+    }
+
+    @Override
+    public void deleteLight(int id) {
+        writes++;
+    }
+}
@@ -0,0 +1,24 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.Map;
+
+/**
+ * A sequence of frames played by {@link AnimationEngine}. A frame contains only the LEDs that change in it
+ * (id to state); the engine merges frames it has to skip, so no change is lost.
+ */
+public interface Animation {
+    /**
+     * Frame count of an animation that runs until the playing thread is interrupted.
+     */
+    int ENDLESS = Integer.MAX_VALUE;
+
+    int frameCount();
+
+    Map<Integer, LedState> frame(int index);
+
+    /**
+     * Called before the engine waits for the due time of the frame, so it can be computed ahead of time.
+     */
+    default void prepare(int index) {
+    }
+}
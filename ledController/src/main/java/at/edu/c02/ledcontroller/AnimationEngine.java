@@ -0,0 +1,122 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Plays an {@link Animation} at a fixed frame rate. Frame {@code i} is due at {@code start + i * period}, so
+ * request latency does not add up over the run. When writes fall behind and the next frame is already due,
+ * the current frame is merged into it instead of being sent on its own. A write that is still retrying when
+ * the next frame is due is abandoned and its LEDs go out with that next frame.
+ * <p>
+ * An {@link Animation#ENDLESS} animation plays until the thread is interrupted; {@code play} then returns its
+ * statistics normally and leaves the interrupt flag set.
+ */
+public class AnimationEngine {
+    private final ApiService apiService;
+    private final Sleeper sleeper;
+    private final LongSupplier nanoClock;
+
+    public AnimationEngine(ApiService apiService) {
+        this(apiService, Thread::sleep, System::nanoTime);
+    }
+
+    public AnimationEngine(ApiService apiService, Sleeper sleeper, LongSupplier nanoClock) {
+        this.apiService = apiService;
+        this.sleeper = sleeper;
+        this.nanoClock = nanoClock;
+    }
+
+    public AnimationStats play(Animation animation, long frameMillis) throws IOException, InterruptedException {
+        return play(animation, frameMillis, 0L);
+    }
+
+    /**
+     * Like {@link #play(Animation, long)}, but the first frame is only due {@code startDelayMillis} from now.
+     */
+    public AnimationStats play(Animation animation, long frameMillis, long startDelayMillis)
+            throws IOException, InterruptedException {
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, frameMillis));
+        double targetFps = periodNanos == 0 ? Double.POSITIVE_INFINITY : TimeUnit.SECONDS.toNanos(1) / (double) periodNanos;
+        int frameCount = animation.frameCount();
+        boolean endless = frameCount == Animation.ENDLESS;
+
+        long start = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, startDelayMillis));
+        long firstWrite = -1;
+        long lastWrite = -1;
+        long maxLatenessNanos = 0;
+        LatencyHistogram lateness = new LatencyHistogram();
+        int framesSent = 0;
+        int framesMerged = 0;
+        int framesAbandoned = 0;
+        Map<Integer, LedState> pending = new LinkedHashMap<>();
+
+        for (int i = 0; i < frameCount; i++) {
+            long due = start + i * periodNanos;
+            animation.prepare(i);
+            long now = nanoClock.getAsLong();
+            if (now < due) {
+                try {
+                    sleeper.sleep(TimeUnit.NANOSECONDS.toMillis(due - now + 999_999L));
+                } catch (InterruptedException e) {
+                    if (!endless) {
+                        throw e;
+                    }
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            pending.putAll(animation.frame(i));
+            boolean lastFrame = i == frameCount - 1;
+            if (!lastFrame && periodNanos > 0 && nanoClock.getAsLong() >= due + periodNanos) {
+                framesMerged++;
+                continue;
+            }
+
+            if (!pending.isEmpty()) {
+                // the last frame must not be dropped, so it only gets the service's own call timeout
+                Deadline frameDeadline = lastFrame || periodNanos == 0
+                        ? Deadline.none()
+                        : Deadline.afterNanos(due + periodNanos - nanoClock.getAsLong());
+                // frames queue behind interactive requests for the shared rate budget
+                try (RequestPriority.Scope ignored = RequestPriority.BACKGROUND.enter()) {
+                    apiService.setLights(pending, frameDeadline);
+                } catch (DeadlineExceededException e) {
+                    if (lastFrame) {
+                        // nothing comes after it that could carry its LEDs
+                        throw e;
+                    }
+                    framesAbandoned++;
+                    continue;
+                } catch (IOException e) {
+                    // an interrupt during the write is how an endless animation is stopped, not a failure
+                    if (endless && Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    throw e;
+                }
+                pending = new LinkedHashMap<>();
+            }
+            framesSent++;
+
+            long written = nanoClock.getAsLong();
+            maxLatenessNanos = Math.max(maxLatenessNanos, written - due);
+            lateness.recordNanos(written - due);
+            if (firstWrite < 0) {
+                firstWrite = written;
+            }
+            lastWrite = written;
+        }
+
+        double achievedFps = framesSent > 1 && lastWrite > firstWrite
+                ? (framesSent - 1) * (double) TimeUnit.SECONDS.toNanos(1) / (lastWrite - firstWrite)
+                : targetFps;
+        return new AnimationStats(framesSent, framesMerged, framesAbandoned, targetFps, achievedFps,
+                TimeUnit.NANOSECONDS.toMillis(maxLatenessNanos), lateness.getMeanMillis(),
+                lateness.getPercentileMillis(0.95));
+    }
+}
@@ -0,0 +1,25 @@
+package at.edu.c02.ledcontroller;
+
+/**
+ * Outcome of one {@link AnimationEngine#play} run.
+ *
+ * @param framesSent       frames actually written
+ * @param framesMerged     frames that were late and got merged into a following frame
+ * @param framesAbandoned  frames whose write missed the next frame's due time and went out with a later frame
+ * @param targetFps        frame rate the animation was scheduled for
+ * @param achievedFps      frames written per second between the first and the last write
+ * @param maxLatenessMillis largest delay of a write behind its scheduled time
+ * @param meanLatenessMillis average delay of a write behind its scheduled time
+ * @param p95LatenessMillis delay that 95% of the writes stayed below
+ */
+public record AnimationStats(int framesSent, int framesMerged, int framesAbandoned, double targetFps,
+                             double achievedFps, long maxLatenessMillis, double meanLatenessMillis,
+                             double p95LatenessMillis) {
+
+    @Override
+    public String toString() {
+        return String.format("%d frames sent, %d merged, %d abandoned, %.2f fps achieved (target %.2f), "
+                        + "lateness mean %.1f ms, p95 %.1f ms, max %d ms", framesSent, framesMerged, framesAbandoned,
+                achievedFps, targetFps, meanLatenessMillis, p95LatenessMillis, maxLatenessMillis);
+    }
+}
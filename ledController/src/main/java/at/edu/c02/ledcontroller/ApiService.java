@@ -3,16 +3,82 @@ package at.edu.c02.ledcontroller;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 public interface ApiService {
     JSONObject getLights() throws IOException;
 
+    /**
+     * Returns the lights of {@link #getLights()} as typed entries; with {@code groupedOnly} only those that
+     * belong to a group.
+     */
+    default List<Light> listLights(boolean groupedOnly) throws IOException {
+        return Light.fromJson(getLights(), groupedOnly);
+    }
+
+    /**
+     * Like {@link #listLights(boolean)}, but gives up with a {@link DeadlineExceededException} once the deadline
+     * has passed, including time spent on retries. The default only checks the deadline before starting.
+     */
+    default List<Light> listLights(boolean groupedOnly, Deadline deadline) throws IOException {
+        deadline.check("listLights");
+        return listLights(groupedOnly);
+    }
+
     // NEU: Einzelne LED per ID abfragen
     JSONObject getLight(int id) throws IOException;
 
+    default JSONObject getLight(int id, Deadline deadline) throws IOException {
+        deadline.check("getLight");
+        return getLight(id);
+    }
+
     // NEU: LED setzen
     JSONObject setLight(int id, String color, boolean state) throws IOException;
 
+    default JSONObject setLight(int id, String color, boolean state, Deadline deadline) throws IOException {
+        deadline.check("setLight");
+        return setLight(id, color, state);
+    }
+
+    /**
+     * Same as {@link #setLight(int, String, boolean)} with a packed {@code 0xRRGGBB} color.
+     */
+    default JSONObject setLight(int id, int rgb, boolean state) throws IOException {
+        return setLight(id, RgbColor.toHex(rgb), state);
+    }
+
+    /**
+     * Sets the LED without returning the backend's answer, so implementations need not read or parse it.
+     */
+    default void writeLight(int id, int rgb, boolean on) throws IOException {
+        writeLight(id, rgb, on, Deadline.none());
+    }
+
+    default void writeLight(int id, int rgb, boolean on, Deadline deadline) throws IOException {
+        setLight(id, RgbColor.toHex(rgb), on, deadline);
+    }
+
+    /**
+     * Sets several LEDs (id to state) in one network operation where the backend allows it.
+     * The default sends one {@link #writeLight} per entry.
+     */
+    default void setLights(Map<Integer, LedState> states) throws IOException {
+        for (Map.Entry<Integer, LedState> entry : states.entrySet()) {
+            writeLight(entry.getKey(), entry.getValue().rgb(), entry.getValue().on());
+        }
+    }
+
+    /**
+     * Like {@link #setLights(Map)}; a write that cannot finish before the deadline is abandoned.
+     */
+    default void setLights(Map<Integer, LedState> states, Deadline deadline) throws IOException {
+        for (Map.Entry<Integer, LedState> entry : states.entrySet()) {
+            writeLight(entry.getKey(), entry.getValue().rgb(), entry.getValue().on(), deadline);
+        }
+    }
+
     // NEU: LED löschen
     void deleteLight(int id) throws IOException;
 }
@@ -2,22 +2,48 @@ package at.edu.c02.ledcontroller;
 
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class ApiServiceImpl implements ApiService {
 
-    private static final String BASE_URL = "https://balanced-civet-91.hasura.app/api/rest";
+    static final String BASE_URL = "https://balanced-civet-91.hasura.app/api/rest";
+    private static final String REST_SUFFIX = "/api/rest";
+    private static final String GRAPHQL_SUFFIX = "/v1/graphql";
+    private static final String SET_LIGHTS_MUTATION =
+            "mutation SetLights($updates: [lights_updates!]!) { update_lights_many(updates: $updates) { affected_rows } }";
+    private static final String BATCH_PROPERTY = "hasura.batch.enabled";
+    private static final String HEDGE_PERCENTILE_PROPERTY = "hasura.hedge.percentile";
+    // upper bound for a whole call including retries, also when the caller passes a later deadline
+    static final String CALL_TIMEOUT_PROPERTY = "hasura.call.timeout.ms";
+    private static final long DEFAULT_CALL_TIMEOUT_MS = 30_000L;
+    // below this many samples the percentile says little, so no hedging yet
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    private static final ExecutorService HEDGE_THREADS = Executors.newVirtualThreadPerTaskExecutor();
     private static final String DEFAULT_GROUP_ID = "Todo"; // placeholder when no secret configured
     private static final int MAX_RETRIES = 5;
     private static final long RETRY_BACKOFF_MS = 1000L;
-    private static final long REQUEST_DELAY_MS = 1500L;
+    // the HTTP client's timer works in milliseconds and may fire just before our deadline
+    private static final long TIMEOUT_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
     private static final String SECRET_FILENAME = "secret.txt";
     private static final String GROUP_ID_PROPERTY = "hasura.group.id";
     private static final String GROUP_ID_ENV = "HASURA_GROUP_ID";
@@ -25,35 +51,128 @@ public class ApiServiceImpl implements ApiService {
             Path.of(SECRET_FILENAME),
             Path.of("..", SECRET_FILENAME)
     );
-    private static String groupIdCache;
 
-    static String getGroupId() {
-        if (groupIdCache != null) {
-            return groupIdCache;
-        }
+    // fixed-length setLight body: the id is right-aligned in spaces and "true" is padded to the length of
+    // "false", so every write fits the same buffer and only the variable bytes are overwritten
+    private static final byte[] SET_LIGHT_TEMPLATE =
+            "{\"id\":           ,\"color\":\"#000000\",\"state\":false}".getBytes(StandardCharsets.US_ASCII);
+    private static final int SET_LIGHT_ID_END = indexOf(SET_LIGHT_TEMPLATE, ",\"color\"");
+    private static final int SET_LIGHT_COLOR_START = indexOf(SET_LIGHT_TEMPLATE, "#") + 1;
+    private static final int SET_LIGHT_STATE_START = indexOf(SET_LIGHT_TEMPLATE, "false");
+    private static final byte[] TRUE_PADDED = "true ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // update_lights_many document built the same way: a fixed prefix and suffix around fixed-length updates,
+    // so the body length only depends on the number of LEDs and buffers can be pooled per frame size
+    private static final byte[] BATCH_PREFIX = ("{\"query\":\"" + SET_LIGHTS_MUTATION
+            + "\",\"variables\":{\"updates\":[").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BATCH_UPDATE_TEMPLATE =
+            "{\"where\":{\"id\":{\"_eq\":           }},\"_set\":{\"color\":\"#000000\",\"on\":false}}"
+                    .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BATCH_SUFFIX = "]}}".getBytes(StandardCharsets.US_ASCII);
+    private static final int BATCH_ID_END = indexOf(BATCH_UPDATE_TEMPLATE, "}},");
+    private static final int BATCH_COLOR_START = indexOf(BATCH_UPDATE_TEMPLATE, "#") + 1;
+    private static final int BATCH_ON_START = indexOf(BATCH_UPDATE_TEMPLATE, "false");
+    // larger frames are rare and get a fresh buffer
+    private static final int MAX_POOLED_BATCH = 64;
+    // responses of writeLight are read into this and thrown away, so concurrent writers may share it
+    private static final byte[] DISCARD_BUFFER = new byte[1024];
+
+    private final String baseUrl;
+    private final String groupId;
+    private final HttpTransport transport;
+    private final RateLimiter rateLimiter;
+    private final ClientMetrics metrics;
+    private final URI graphQlUri;
+    private final URI setLightUri;
+    private final Map<String, String> readHeaders;
+    private final Map<String, String> writeHeaders;
+    private final Queue<byte[]> setLightBodies = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, Queue<byte[]>> batchBodies = new ConcurrentHashMap<>();
+    // 0 disables hedging
+    private final double hedgePercentile;
+    private final Duration callTimeout;
+    // cleared on the first rejected batch mutation; from then on setLights pipelines single writes
+    private volatile boolean batchSupported;
+
+    public ApiServiceImpl() {
+        this(JdkHttpTransport.shared());
+    }
+
+    public ApiServiceImpl(HttpTransport transport) {
+        this(BASE_URL, transport, RateLimiter.shared());
+    }
+
+    public ApiServiceImpl(String baseUrl, HttpTransport transport, RateLimiter rateLimiter) {
+        this(baseUrl, transport, rateLimiter, ClientMetrics.shared());
+    }
 
+    public ApiServiceImpl(String baseUrl, HttpTransport transport, RateLimiter rateLimiter, ClientMetrics metrics) {
+        this(baseUrl, configuredGroupId(), transport, rateLimiter, metrics);
+    }
+
+    /**
+     * Service for one {@code X-Hasura-Group-ID}. Services for different groups can share a transport but
+     * should each get their own rate limiter, since the backend budgets every group separately.
+     */
+    public ApiServiceImpl(String baseUrl, String groupId, HttpTransport transport, RateLimiter rateLimiter,
+                          ClientMetrics metrics) {
+        this.baseUrl = baseUrl;
+        this.groupId = groupId;
+        this.transport = transport;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.graphQlUri = baseUrl.endsWith(REST_SUFFIX)
+                ? URI.create(baseUrl.substring(0, baseUrl.length() - REST_SUFFIX.length()) + GRAPHQL_SUFFIX)
+                : null;
+        this.setLightUri = URI.create(baseUrl + "/setLight");
+        this.readHeaders = Map.of("X-Hasura-Group-ID", groupId);
+        this.writeHeaders = Map.of("X-Hasura-Group-ID", groupId, "Content-Type", "application/json");
+        this.batchSupported = graphQlUri != null
+                && Boolean.parseBoolean(System.getProperty(BATCH_PROPERTY, "true"));
+        this.hedgePercentile = hedgePercentileFromProperty();
+        this.callTimeout = Duration.ofMillis(Long.getLong(CALL_TIMEOUT_PROPERTY, DEFAULT_CALL_TIMEOUT_MS));
+    }
+
+    /**
+     * Group id from {@value #GROUP_ID_PROPERTY}, {@value #GROUP_ID_ENV} or {@value #SECRET_FILENAME}, in that order.
+     */
+    static String configuredGroupId() {
         String fromProperty = sanitize(System.getProperty(GROUP_ID_PROPERTY));
         if (fromProperty != null) {
-            groupIdCache = fromProperty;
-            return groupIdCache;
+            return fromProperty;
         }
 
         String fromEnv = sanitize(System.getenv(GROUP_ID_ENV));
         if (fromEnv != null) {
-            groupIdCache = fromEnv;
-            return groupIdCache;
+            return fromEnv;
         }
 
         for (Path secretPath : SECRET_LOCATIONS) {
             String fromFile = readSecret(secretPath);
             if (fromFile != null) {
-                groupIdCache = fromFile;
-                return groupIdCache;
+                return fromFile;
             }
         }
 
-        groupIdCache = DEFAULT_GROUP_ID;
-        return groupIdCache;
+        return DEFAULT_GROUP_ID;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    private static double hedgePercentileFromProperty() {
+        String value = System.getProperty(HEDGE_PERCENTILE_PROPERTY);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            double percentile = Double.parseDouble(value.trim());
+            return percentile > 0 && percentile < 1 ? percentile : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     private static String readSecret(Path path) {
@@ -77,40 +196,85 @@ public class ApiServiceImpl implements ApiService {
 
     // Hilfsmethode für HTTP-Requests
     JSONObject sendRequest(String path, String method, JSONObject body) throws IOException {
-        URL url = new URL(BASE_URL + path);
+        return sendRequest(path, method, body, Deadline.none());
+    }
+
+    JSONObject sendRequest(String path, String method, JSONObject body, Deadline deadline) throws IOException {
+        return sendRequest(URI.create(baseUrl + path), path, method, body, deadline, ApiServiceImpl::readJson);
+    }
+
+    private static JSONObject readJson(InputStream in) throws IOException {
+        String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        return text.isEmpty() ? new JSONObject() : new JSONObject(text);
+    }
+
+    private static Void discard(InputStream in) throws IOException {
+        while (in.read(DISCARD_BUFFER) >= 0) {
+            // drain, so the connection can be reused
+        }
+        return null;
+    }
+
+    private <T> T sendRequest(URI uri, String path, String method, JSONObject body, Deadline deadline,
+                              ResponseReader<T> reader) throws IOException {
+        byte[] payload = body == null ? null : body.toString().getBytes(StandardCharsets.UTF_8);
+        return sendPayload(uri, path, method, payload, deadline, reader);
+    }
+
+    private <T> T sendPayload(URI uri, String path, String method, byte[] payload, Deadline deadline,
+                              ResponseReader<T> reader) throws IOException {
+        Map<String, String> headers = payload == null ? readHeaders : writeHeaders;
+        try {
+            return sendWithRetries(uri, path, method, headers, payload, deadline.min(Deadline.after(callTimeout)),
+                    reader);
+        } catch (IOException e) {
+            metrics.recordFailure();
+            throw e;
+        }
+    }
+
+    private <T> T sendWithRetries(URI uri, String path, String method, Map<String, String> headers, byte[] payload,
+                                  Deadline deadline, ResponseReader<T> reader) throws IOException {
         for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+            long waitStart = System.nanoTime();
             try {
-                Thread.sleep(REQUEST_DELAY_MS);
+                // also covers 429 backoff: the limiter blocks until Retry-After has passed
+                if (!rateLimiter.tryAcquire(deadline.remainingNanos(), TimeUnit.NANOSECONDS)) {
+                    throw new DeadlineExceededException(method + " " + path + " gave up after " + attempt
+                            + " attempt(s): no request budget left before the deadline");
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                throw new IOException("Interrupted while waiting to respect rate limit", e);
+                throw new IOException("Interrupted while waiting for the rate limiter", e);
+            } finally {
+                metrics.recordRateLimitWait(System.nanoTime() - waitStart);
             }
 
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod(method);
-            connection.setRequestProperty("X-Hasura-Group-ID", getGroupId());
-
-            if (body != null) {
-                connection.setDoOutput(true);
-                connection.setRequestProperty("Content-Type", "application/json");
-                byte[] payload = body.toString().getBytes();
-                connection.getOutputStream().write(payload);
-            }
+            metrics.recordAttempt(attempt, payload == null ? 0 : payload.length);
+            long sent = System.nanoTime();
+            Duration timeout = Duration.ofNanos(deadline.remainingNanos());
+            try (TransportResponse response = hedgePercentile > 0 && "GET".equals(method)
+                    ? sendHedged(method, path, uri, headers, timeout)
+                    : transport.send(method, uri, headers, payload, timeout)) {
+                long headersReceived = System.nanoTime();
+                int responseCode = response.statusCode();
+                if (responseCode >= 200 && responseCode < 300) {
+                    rateLimiter.onSuccess();
+                    ClientMetrics.CountingInputStream body = new ClientMetrics.CountingInputStream(response.body());
+                    T result = reader.read(body);
+                    metrics.recordExchange(method, path, sent, headersReceived, System.nanoTime(), body.getCount());
+                    return result;
+                }
+                metrics.recordExchange(method, path, sent, headersReceived, headersReceived, 0);
 
-            int responseCode = connection.getResponseCode();
-            if (responseCode >= 200 && responseCode < 300) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                int character;
-                while ((character = reader.read()) != -1) {
-                    sb.append((char) character);
+                if (responseCode != 429 || attempt >= MAX_RETRIES) {
+                    throw new HttpStatusException("Error: " + method + " " + path + " failed with code " + responseCode,
+                            responseCode);
                 }
-                return sb.isEmpty() ? new JSONObject() : new JSONObject(sb.toString());
-            }
+                metrics.recordThrottled();
 
-            if (responseCode == 429 && attempt < MAX_RETRIES) {
                 long retryDelayMs = RETRY_BACKOFF_MS * (attempt + 1);
-                String retryAfterHeader = connection.getHeaderField("Retry-After");
+                String retryAfterHeader = response.header("Retry-After");
                 if (retryAfterHeader != null) {
                     try {
                         long retryAfterSeconds = Long.parseLong(retryAfterHeader.trim());
@@ -119,18 +283,86 @@ public class ApiServiceImpl implements ApiService {
                         // ignore invalid header, fall back to calculated backoff
                     }
                 }
+                // the limiter holds back this retry and every other request until the backoff has passed
+                rateLimiter.onThrottled(retryDelayMs);
+            } catch (HttpTimeoutException e) {
+                if (deadline.remainingNanos() > TIMEOUT_SLACK_NANOS) {
+                    // the transport's own read timeout, not ours
+                    throw e;
+                }
+                // the request may have reached the backend, but the caller cannot use the answer anymore
+                throw new DeadlineExceededException(method + " " + path + " gave up after " + (attempt + 1)
+                        + " attempt(s): no response before the deadline", e);
+            }
+        }
+        throw new IOException("Error: " + method + " " + path + " failed after retries");
+    }
+
+    /**
+     * Sends an idempotent request and, if it has not answered within the endpoint's recent
+     * {@value #HEDGE_PERCENTILE_PROPERTY} latency, a second identical one. Whichever answers first wins and the
+     * other is cancelled. The hedge is only sent if the rate limiter has a token to spare right now.
+     */
+    private TransportResponse sendHedged(String method, String path, URI uri, Map<String, String> headers,
+                                         Duration timeout) throws IOException {
+        LatencyHistogram latency = metrics.getHistogram(method, path);
+        if (latency == null || latency.getCount() < HEDGE_MIN_SAMPLES) {
+            return transport.send(method, uri, headers, null, timeout);
+        }
+        long hedgeDelayMicros = Math.max(1000L, (long) (latency.getPercentileMillis(hedgePercentile) * 1000));
+
+        ExecutorCompletionService<TransportResponse> race = new ExecutorCompletionService<>(HEDGE_THREADS);
+        List<Future<TransportResponse>> attempts = new ArrayList<>(2);
+        attempts.add(race.submit(() -> transport.send(method, uri, headers, null, timeout)));
+        try {
+            Future<TransportResponse> done = race.poll(hedgeDelayMicros, TimeUnit.MICROSECONDS);
+            if (done == null && rateLimiter.tryAcquire()) {
+                metrics.recordHedge();
+                attempts.add(race.submit(() -> transport.send(method, uri, headers, null, timeout)));
+            }
+
+            IOException failure = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (done == null) {
+                    done = race.take();
+                }
                 try {
-                    Thread.sleep(retryDelayMs);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Interrupted while waiting to retry request", e);
+                    TransportResponse response = done.get();
+                    if (done != attempts.get(0)) {
+                        metrics.recordHedgeWon();
+                    }
+                    cancelLosers(attempts, done);
+                    return response;
+                } catch (ExecutionException e) {
+                    IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
                 }
-                continue;
+                done = null;
             }
+            throw failure;
+        } catch (InterruptedException e) {
+            cancelLosers(attempts, null);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + method + " " + path, e);
+        }
+    }
 
-            throw new IOException("Error: " + method + " " + path + " failed with code " + responseCode);
+    private static void cancelLosers(List<Future<TransportResponse>> attempts, Future<TransportResponse> winner) {
+        for (Future<TransportResponse> attempt : attempts) {
+            if (attempt == winner || attempt.cancel(true)) {
+                continue;
+            }
+            // finished anyway; release its connection
+            try {
+                attempt.get().close();
+            } catch (Exception ignored) {
+                // a failed loser has nothing to release
+            }
         }
-        throw new IOException("Error: " + method + " " + path + " failed after retries");
     }
 
     // Hilfsmethode für GET-Requests
@@ -143,11 +375,30 @@ public class ApiServiceImpl implements ApiService {
         return sendGetRequest("/getLights");
     }
 
+    /**
+     * Decodes the {@code getLights} body while it streams in, without building a JSON tree.
+     */
+    @Override
+    public List<Light> listLights(boolean groupedOnly) throws IOException {
+        return listLights(groupedOnly, Deadline.none());
+    }
+
+    @Override
+    public List<Light> listLights(boolean groupedOnly, Deadline deadline) throws IOException {
+        return sendRequest(URI.create(baseUrl + "/getLights"), "/getLights", "GET", null, deadline,
+                in -> LightsDecoder.decode(in, groupedOnly));
+    }
+
     @Override
     public JSONObject getLight(int id) throws IOException {
         return sendGetRequest("/lights/" + id);
     }
 
+    @Override
+    public JSONObject getLight(int id, Deadline deadline) throws IOException {
+        return sendRequest("/lights/" + id, "GET", null, deadline);
+    }
+
     @Override
     public JSONObject setLight(int id, String color, boolean state) throws IOException {
         JSONObject body = new JSONObject()
@@ -157,9 +408,167 @@ public class ApiServiceImpl implements ApiService {
         return sendRequest("/setLight", "PUT", body);
     }
 
+    @Override
+    public JSONObject setLight(int id, String color, boolean state, Deadline deadline) throws IOException {
+        JSONObject body = new JSONObject()
+                .put("id", id)
+                .put("color", color)
+                .put("state", state);
+        return sendRequest("/setLight", "PUT", body, deadline);
+    }
+
+    /**
+     * Fast path for writes whose answer nobody reads: the body is filled into a pooled fixed-length buffer
+     * instead of going through {@link JSONObject}, and the response is only checked for its status code.
+     */
+    @Override
+    public void writeLight(int id, int rgb, boolean on, Deadline deadline) throws IOException {
+        byte[] body = setLightBodies.poll();
+        if (body == null) {
+            body = newSetLightBody();
+        }
+        try {
+            encodeSetLight(body, id, rgb, on);
+            sendPayload(setLightUri, "/setLight", "PUT", body, deadline, ApiServiceImpl::discard);
+        } finally {
+            // the transport is done with the body once send() has returned
+            setLightBodies.offer(body);
+        }
+    }
+
+    static byte[] newSetLightBody() {
+        return SET_LIGHT_TEMPLATE.clone();
+    }
+
+    // Visible for testing
+    static void encodeSetLight(byte[] body, int id, int rgb, boolean on) {
+        encodeFields(body, SET_LIGHT_ID_END, id, SET_LIGHT_COLOR_START, rgb, SET_LIGHT_STATE_START, on);
+    }
+
+    static byte[] newBatchBody(int updates) {
+        byte[] body = new byte[BATCH_PREFIX.length + updates * (BATCH_UPDATE_TEMPLATE.length + 1) - 1
+                + BATCH_SUFFIX.length];
+        System.arraycopy(BATCH_PREFIX, 0, body, 0, BATCH_PREFIX.length);
+        int pos = BATCH_PREFIX.length;
+        for (int i = 0; i < updates; i++) {
+            if (i > 0) {
+                body[pos++] = ',';
+            }
+            System.arraycopy(BATCH_UPDATE_TEMPLATE, 0, body, pos, BATCH_UPDATE_TEMPLATE.length);
+            pos += BATCH_UPDATE_TEMPLATE.length;
+        }
+        System.arraycopy(BATCH_SUFFIX, 0, body, pos, BATCH_SUFFIX.length);
+        return body;
+    }
+
+    // Visible for testing: body must come from newBatchBody(states.size())
+    static void encodeBatch(byte[] body, Map<Integer, LedState> states) {
+        int pos = BATCH_PREFIX.length;
+        for (Map.Entry<Integer, LedState> entry : states.entrySet()) {
+            LedState state = entry.getValue();
+            encodeFields(body, pos + BATCH_ID_END, entry.getKey(), pos + BATCH_COLOR_START, state.rgb(),
+                    pos + BATCH_ON_START, state.on());
+            pos += BATCH_UPDATE_TEMPLATE.length + 1;
+        }
+    }
+
+    // writes the id right-aligned in the 11 bytes before idEnd, six hex digits and a padded boolean
+    private static void encodeFields(byte[] body, int idEnd, int id, int colorStart, int rgb, int onStart,
+                                     boolean on) {
+        int pos = idEnd;
+        long value = Math.abs((long) id);
+        do {
+            body[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        if (id < 0) {
+            body[--pos] = '-';
+        }
+        while (pos > idEnd - 11) {
+            body[--pos] = ' ';
+        }
+        for (int i = 0; i < 6; i++) {
+            body[colorStart + i] = HEX_DIGITS[(rgb >>> (20 - 4 * i)) & 0xF];
+        }
+        System.arraycopy(on ? TRUE_PADDED : FALSE, 0, body, onStart, FALSE.length);
+    }
+
+    private static int indexOf(byte[] haystack, String needle) {
+        return new String(haystack, StandardCharsets.US_ASCII).indexOf(needle);
+    }
+
+    /**
+     * Sends all updates as one Hasura {@code update_lights_many} mutation. If the backend rejects it
+     * (no GraphQL access for this role, older Hasura), falls back to concurrent {@link #writeLight} calls.
+     */
+    @Override
+    public void setLights(Map<Integer, LedState> states) throws IOException {
+        setLights(states, Deadline.none());
+    }
+
+    @Override
+    public void setLights(Map<Integer, LedState> states, Deadline deadline) throws IOException {
+        if (states.isEmpty()) {
+            return;
+        }
+        if (states.size() > 1 && batchSupported && sendBatch(states, deadline)) {
+            return;
+        }
+
+        AsyncApiService async = new AsyncApiServiceImpl(this);
+        CompletableFuture<?>[] writes = new CompletableFuture<?>[states.size()];
+        int i = 0;
+        for (Map.Entry<Integer, LedState> entry : states.entrySet()) {
+            writes[i++] = async.writeLight(entry.getKey(), entry.getValue().rgb(), entry.getValue().on(), deadline);
+        }
+        AsyncApiServiceImpl.joinAll(writes);
+    }
+
+    private boolean sendBatch(Map<Integer, LedState> states, Deadline deadline) throws IOException {
+        // animation frames repeat their size, so the document is filled into a pooled buffer like writeLight
+        Queue<byte[]> pool = states.size() <= MAX_POOLED_BATCH
+                ? batchBodies.computeIfAbsent(states.size(), size -> new ConcurrentLinkedQueue<>())
+                : null;
+        byte[] body = pool == null ? null : pool.poll();
+        if (body == null) {
+            body = newBatchBody(states.size());
+        }
+
+        JSONObject response;
+        try {
+            encodeBatch(body, states);
+            response = sendGraphQl(body, deadline);
+        } catch (HttpStatusException e) {
+            // only a client error means "not supported"; throttling and server errors are real failures
+            if (e.getStatusCode() == 429 || e.getStatusCode() < 400 || e.getStatusCode() >= 500) {
+                throw e;
+            }
+            batchSupported = false;
+            return false;
+        } finally {
+            if (pool != null) {
+                pool.offer(body);
+            }
+        }
+        // GraphQL reports validation and permission problems with status 200 and an "errors" array
+        if (response.has("errors") || response.optJSONObject("data") == null) {
+            batchSupported = false;
+            return false;
+        }
+        return true;
+    }
+
+    // Visible for testing
+    JSONObject sendGraphQl(byte[] body, Deadline deadline) throws IOException {
+        return sendPayload(graphQlUri, GRAPHQL_SUFFIX, "POST", body, deadline, ApiServiceImpl::readJson);
+    }
+
     @Override
     public void deleteLight(int id) throws IOException {
         sendRequest("/lights/" + id, "DELETE", null);
     }
 
+    private interface ResponseReader<T> {
+        T read(InputStream body) throws IOException;
+    }
 }
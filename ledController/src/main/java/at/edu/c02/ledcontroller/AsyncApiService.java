@@ -0,0 +1,29 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link ApiService}. Failures complete the future exceptionally with the
+ * {@link java.io.IOException} the blocking call would have thrown.
+ */
+public interface AsyncApiService {
+    CompletableFuture<JSONObject> getLights();
+
+    CompletableFuture<JSONObject> getLight(int id);
+
+    CompletableFuture<JSONObject> setLight(int id, String color, boolean state);
+
+    CompletableFuture<JSONObject> setLight(int id, String color, boolean state, Deadline deadline);
+
+    /**
+     * Non-blocking {@link ApiService#writeLight(int, int, boolean, Deadline)}.
+     */
+    CompletableFuture<Void> writeLight(int id, int rgb, boolean on, Deadline deadline);
+
+    CompletableFuture<Void> setLights(Map<Integer, LedState> states);
+
+    CompletableFuture<Void> deleteLight(int id);
+}
@@ -0,0 +1,113 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs every call of a blocking {@link ApiService} on its own virtual thread. Rate limiting stays with the
+ * wrapped service, so concurrent calls still share its budget.
+ */
+public class AsyncApiServiceImpl implements AsyncApiService {
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ApiService apiService;
+    private final Executor executor;
+
+    public AsyncApiServiceImpl(ApiService apiService) {
+        this(apiService, VIRTUAL_THREADS);
+    }
+
+    public AsyncApiServiceImpl(ApiService apiService, Executor executor) {
+        this.apiService = apiService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> getLights() {
+        return supply(apiService::getLights);
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> getLight(int id) {
+        return supply(() -> apiService.getLight(id));
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> setLight(int id, String color, boolean state) {
+        return supply(() -> apiService.setLight(id, color, state));
+    }
+
+    @Override
+    public CompletableFuture<JSONObject> setLight(int id, String color, boolean state, Deadline deadline) {
+        return supply(() -> apiService.setLight(id, color, state, deadline));
+    }
+
+    @Override
+    public CompletableFuture<Void> writeLight(int id, int rgb, boolean on, Deadline deadline) {
+        return supply(() -> {
+            apiService.writeLight(id, rgb, on, deadline);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> setLights(Map<Integer, LedState> states) {
+        return supply(() -> {
+            apiService.setLights(states);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteLight(int id) {
+        return supply(() -> {
+            apiService.deleteLight(id);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for all futures and rethrows the first failure as the {@link IOException} the blocking API would throw.
+     */
+    public static void joinAll(CompletableFuture<?>... futures) throws IOException {
+        try {
+            CompletableFuture.allOf(futures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for concurrent requests", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private <T> CompletableFuture<T> supply(IoCall<T> call) {
+        // pooled threads do not inherit the caller's lane
+        RequestPriority priority = RequestPriority.current();
+        return CompletableFuture.supplyAsync(() -> {
+            try (RequestPriority.Scope ignored = priority.enter()) {
+                return call.call();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private interface IoCall<T> {
+        T call() throws IOException;
+    }
+}
@@ -0,0 +1,211 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs LED commands from a script, one per line, without prompts. Empty lines and lines starting with {@code #}
+ * are ignored.
+ * <p>
+ * {@code setled <id> <color>} lines are pipelined: up to {@value #MAX_IN_FLIGHT} writes are in flight at once,
+ * while writes to the same LED still go out in script order. All other commands wait for the pending writes
+ * and then run on their own: {@code status <id>}, {@code turnoff}, {@code showtime [hh:mm:ss]},
+ * {@code clock <seconds>}, {@code spinningled <color> <turns>}, {@code spinningwheel <steps>},
+ * {@code save <file>}, {@code restore <file>}, {@code replay <file>}, {@code flush} and {@code record <file>}
+ * followed by a {@code spinningled} or {@code spinningwheel} command.
+ */
+public class BatchRunner {
+    private static final int MAX_IN_FLIGHT = 64;
+    private static final int MAX_REPORTED_FAILURES = 10;
+    private static final long SPIN_SLEEP_MILLIS = 200L;
+    private static final long SPINNING_WHEEL_SLEEP_MILLIS = 1000L;
+
+    /**
+     * @param failureMessages the first failures, as {@code "line N: message"}
+     */
+    public record Summary(int commands, int failed, long elapsedNanos, List<String> failureMessages) {
+
+        public double commandsPerSecond() {
+            return elapsedNanos == 0 ? 0 : commands / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d commands in %.2f s (%.1f commands/s), %d failed",
+                    commands, elapsedNanos / 1e9, commandsPerSecond(), failed);
+        }
+    }
+
+    private final LedController controller;
+    private final AsyncApiService async;
+    private final PrintStream out;
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final Map<Integer, CompletableFuture<Void>> lastWrite = new HashMap<>();
+    private final List<String> failureMessages = new ArrayList<>();
+    private int failed;
+
+    public BatchRunner(LedController controller, ApiService apiService, PrintStream out) {
+        this.controller = controller;
+        this.async = new AsyncApiServiceImpl(apiService);
+        this.out = out;
+    }
+
+    public Summary run(BufferedReader script) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        int commands = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            commands++;
+            try {
+                execute(lineNumber, trimmed.split("\\s+"));
+            } catch (IOException | RuntimeException e) {
+                fail(lineNumber, e);
+            }
+        }
+        awaitWrites();
+        return new Summary(commands, failed, System.nanoTime() - start, List.copyOf(failureMessages));
+    }
+
+    private void execute(int lineNumber, String[] args) throws IOException, InterruptedException {
+        String command = args[0].toLowerCase();
+        if (command.equals("setled")) {
+            expectArgs(args, 2);
+            setLed(lineNumber, Integer.parseInt(args[1]), args[2]);
+            return;
+        }
+
+        awaitWrites();
+        switch (command) {
+            case "flush" -> expectArgs(args, 0);
+            case "status" -> {
+                expectArgs(args, 1);
+                JSONObject light = controller.getLight(Integer.parseInt(args[1]));
+                out.println("LED " + light.getInt("id") + " is currently " + (light.getBoolean("on") ? "on" : "off")
+                        + ". Color: " + light.getString("color") + ".");
+            }
+            case "turnoff" -> {
+                expectArgs(args, 0);
+                controller.turnOffAllLeds();
+            }
+            case "save" -> {
+                expectArgs(args, 1);
+                controller.captureScene().write(Path.of(args[1]));
+            }
+            case "restore" -> {
+                expectArgs(args, 1);
+                controller.restoreScene(Scene.read(Path.of(args[1])));
+            }
+            case "showtime" -> {
+                if (args.length == 1) {
+                    controller.showTime();
+                } else {
+                    expectArgs(args, 1);
+                    String[] time = args[1].split(":");
+                    if (time.length != 3) {
+                        throw new IllegalArgumentException("Expected hh:mm:ss but got " + args[1]);
+                    }
+                    controller.showTime(Integer.parseInt(time[0]), Integer.parseInt(time[1]), Integer.parseInt(time[2]));
+                }
+            }
+            case "clock" -> {
+                expectArgs(args, 1);
+                int seconds = Integer.parseInt(args[1]);
+                // a script has nobody to stop an endless clock
+                if (seconds <= 0) {
+                    throw new IllegalArgumentException("'clock' expects a positive number of seconds");
+                }
+                controller.clock(seconds);
+            }
+            case "spinningled" -> {
+                expectArgs(args, 2);
+                controller.spinningLed(args[1], Integer.parseInt(args[2]), SPIN_SLEEP_MILLIS);
+            }
+            case "spinningwheel" -> {
+                expectArgs(args, 1);
+                controller.spinningWheel(Integer.parseInt(args[1]), SPINNING_WHEEL_SLEEP_MILLIS);
+            }
+            case "record" -> record(args);
+            case "replay" -> {
+                expectArgs(args, 1);
+                controller.replay(Timeline.read(Path.of(args[1])));
+            }
+            default -> throw new IllegalArgumentException("Unknown command '" + args[0] + "'");
+        }
+    }
+
+    private void record(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("'record' expects a file and an effect");
+        }
+        String[] effect = new String[args.length - 2];
+        System.arraycopy(args, 2, effect, 0, effect.length);
+        Timeline timeline = switch (effect[0].toLowerCase()) {
+            case "spinningled" -> {
+                expectArgs(effect, 2);
+                yield controller.recordSpinningLed(effect[1], Integer.parseInt(effect[2]), SPIN_SLEEP_MILLIS);
+            }
+            case "spinningwheel" -> {
+                expectArgs(effect, 1);
+                yield controller.recordSpinningWheel(Integer.parseInt(effect[1]), SPINNING_WHEEL_SLEEP_MILLIS);
+            }
+            default -> throw new IllegalArgumentException("Cannot record '" + effect[0] + "'");
+        };
+        timeline.write(Path.of(args[1]));
+    }
+
+    private void setLed(int lineNumber, int id, String color) throws InterruptedException {
+        int rgb = RgbColor.parse(color); // reject bad colors before anything is sent
+
+        inFlight.acquire();
+        CompletableFuture<Void> previous = lastWrite.get(id);
+        CompletableFuture<Void> write = previous == null
+                ? async.writeLight(id, rgb, true, Deadline.none())
+                : previous.thenCompose(ignored -> async.writeLight(id, rgb, true, Deadline.none()));
+        CompletableFuture<Void> done = write.handle((ignored, error) -> {
+            inFlight.release();
+            if (error != null) {
+                fail(lineNumber, error instanceof CompletionException ? error.getCause() : error);
+            }
+            return null;
+        });
+        lastWrite.put(id, done);
+    }
+
+    private void awaitWrites() {
+        for (CompletableFuture<Void> write : lastWrite.values()) {
+            write.join();
+        }
+        lastWrite.clear();
+    }
+
+    private synchronized void fail(int lineNumber, Throwable e) {
+        failed++;
+        if (failureMessages.size() < MAX_REPORTED_FAILURES) {
+            failureMessages.add("line " + lineNumber + ": " + e.getMessage());
+        }
+    }
+
+    private static void expectArgs(String[] args, int count) {
+        if (args.length != count + 1) {
+            throw new IllegalArgumentException("'" + args[0] + "' expects " + count + " argument(s)");
+        }
+    }
+}
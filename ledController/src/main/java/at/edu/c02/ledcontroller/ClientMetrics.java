@@ -0,0 +1,262 @@
+package at.edu.c02.ledcontroller;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and per-endpoint latency histograms for the requests an {@link ApiServiceImpl} sends.
+ * <p>
+ * Time is split into waiting for the {@link RateLimiter} (including 429 backoff), waiting for the response
+ * headers, and reading/decoding the body. Endpoint latencies cover one attempt, from sending until the body
+ * has been read; ids in paths are folded into {@code {id}}.
+ */
+public class ClientMetrics implements ClientMetricsMXBean {
+    static final String OBJECT_NAME = "at.edu.c02.ledcontroller:type=ClientMetrics";
+
+    private static ClientMetrics shared;
+
+    private final Map<String, LatencyHistogram> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder hedgedRequests = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder rateLimitWaitNanos = new LongAdder();
+    private final LongAdder responseWaitNanos = new LongAdder();
+    private final LongAdder bodyReadNanos = new LongAdder();
+
+    /**
+     * Returns the process-wide metrics that services without explicit metrics report into.
+     */
+    public static synchronized ClientMetrics shared() {
+        if (shared == null) {
+            shared = new ClientMetrics();
+        }
+        return shared;
+    }
+
+    /**
+     * Registers this instance with the platform MBean server. Registering twice is a no-op.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ignored) {
+            // already visible
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    void recordRateLimitWait(long nanos) {
+        rateLimitWaitNanos.add(nanos);
+    }
+
+    void recordAttempt(int attempt, int bytes) {
+        requests.increment();
+        if (attempt > 0) {
+            retries.increment();
+        }
+        bytesSent.add(bytes);
+    }
+
+    /**
+     * Records one finished exchange from the three {@link System#nanoTime()} stamps taken around it.
+     */
+    void recordExchange(String method, String path, long sentNanos, long headersNanos, long doneNanos,
+                        long bytes) {
+        endpoints.computeIfAbsent(endpoint(method, path), key -> new LatencyHistogram())
+                .recordNanos(doneNanos - sentNanos);
+        responseWaitNanos.add(headersNanos - sentNanos);
+        bodyReadNanos.add(doneNanos - headersNanos);
+        bytesReceived.add(bytes);
+    }
+
+    void recordThrottled() {
+        throttled.increment();
+    }
+
+    void recordFailure() {
+        failedCalls.increment();
+    }
+
+    void recordHedge() {
+        requests.increment();
+        hedgedRequests.increment();
+    }
+
+    void recordHedgeWon() {
+        hedgesWon.increment();
+    }
+
+    /**
+     * Returns the histogram for the endpoint, or {@code null} if nothing was sent to it yet.
+     */
+    public LatencyHistogram getHistogram(String method, String path) {
+        return endpoints.get(endpoint(method, path));
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getThrottledResponses() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getFailedCalls() {
+        return failedCalls.sum();
+    }
+
+    @Override
+    public long getHedgedRequests() {
+        return hedgedRequests.sum();
+    }
+
+    @Override
+    public long getHedgesWon() {
+        return hedgesWon.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getRateLimitWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(rateLimitWaitNanos.sum());
+    }
+
+    @Override
+    public long getResponseWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(responseWaitNanos.sum());
+    }
+
+    @Override
+    public long getBodyReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(bodyReadNanos.sum());
+    }
+
+    @Override
+    public Map<String, String> getEndpointLatencies() {
+        Map<String, String> result = new TreeMap<>();
+        endpoints.forEach((endpoint, histogram) -> result.put(endpoint, histogram.toString()));
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        endpoints.clear();
+        for (LongAdder adder : new LongAdder[]{requests, retries, throttled, failedCalls, hedgedRequests, hedgesWon,
+                bytesSent, bytesReceived, rateLimitWaitNanos, responseWaitNanos, bodyReadNanos}) {
+            adder.reset();
+        }
+    }
+
+    /**
+     * Multi-line summary for the console.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Requests: %d (%d retries, %d throttled with 429, %d failed calls)%n",
+                getRequests(), getRetries(), getThrottledResponses(), getFailedCalls()));
+        if (getHedgedRequests() > 0) {
+            sb.append(String.format("Hedges: %d sent, %d answered first%n", getHedgedRequests(), getHedgesWon()));
+        }
+        sb.append(String.format("Bytes: %d sent, %d received%n", getBytesSent(), getBytesReceived()));
+        sb.append(String.format("Time: %d ms rate limiter/backoff, %d ms waiting for responses, %d ms reading bodies%n",
+                getRateLimitWaitMillis(), getResponseWaitMillis(), getBodyReadMillis()));
+        getEndpointLatencies().forEach((endpoint, summary) ->
+                sb.append(String.format("%-22s %s%n", endpoint, summary)));
+        return sb.toString();
+    }
+
+    static String endpoint(String method, String path) {
+        StringBuilder sb = new StringBuilder(method.length() + path.length() + 4).append(method).append(' ');
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start + 1);
+            if (end < 0) {
+                end = path.length();
+            }
+            boolean numeric = end - start > 1;
+            for (int i = start + 1; i < end && numeric; i++) {
+                numeric = Character.isDigit(path.charAt(i));
+            }
+            if (numeric) {
+                sb.append(path.charAt(start)).append("{id}");
+            } else {
+                sb.append(path, start, end);
+            }
+            start = end;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Counts the bytes of a response body as the reader consumes it.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
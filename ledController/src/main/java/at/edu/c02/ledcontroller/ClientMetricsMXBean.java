@@ -0,0 +1,37 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ClientMetrics}, registered as {@value ClientMetrics#OBJECT_NAME}.
+ */
+public interface ClientMetricsMXBean {
+    long getRequests();
+
+    long getRetries();
+
+    long getThrottledResponses();
+
+    long getFailedCalls();
+
+    long getHedgedRequests();
+
+    long getHedgesWon();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    long getRateLimitWaitMillis();
+
+    long getResponseWaitMillis();
+
+    long getBodyReadMillis();
+
+    /**
+     * Latency summary per endpoint, keyed like {@code "GET /lights/{id}"}.
+     */
+    Map<String, String> getEndpointLatencies();
+
+    void reset();
+}
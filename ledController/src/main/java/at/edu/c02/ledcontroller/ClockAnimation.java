@@ -0,0 +1,108 @@
+package at.edu.c02.ledcontroller;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall clock on the group: hour hand red, minute hand green, second hand blue, mixed where hands overlap.
+ * Frame {@code i} shows {@code firstTick + i} seconds and is meant to be played with a period of one second;
+ * with {@link Animation#ENDLESS} ticks it runs until the engine is interrupted.
+ * <p>
+ * Frame 0 sets every LED; every later frame contains only the LEDs whose color changes, which is the one or
+ * two LEDs under a moving hand. A frame only depends on the hands of its own and the previous second, so
+ * nothing is precomputed: {@link #prepare} builds the next frame while the engine waits for its tick.
+ */
+public class ClockAnimation implements Animation {
+    private final int[] ids;
+    private final LocalTime firstTick;
+    private final int ticks;
+
+    private int preparedIndex = -1;
+    private Map<Integer, LedState> prepared;
+
+    public ClockAnimation(int[] ids, LocalTime firstTick, int ticks) {
+        this.ids = ids.clone();
+        this.firstTick = firstTick;
+        this.ticks = Math.max(0, ticks);
+    }
+
+    /**
+     * Returns the complete clock face for the given time.
+     */
+    public static Map<Integer, LedState> face(int[] ids, int hours, int minutes, int seconds) {
+        int[] hands = hands(hours, minutes, seconds, ids.length);
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        for (int led = 0; led < ids.length; led++) {
+            frame.put(ids[led], stateAt(led, hands));
+        }
+        return frame;
+    }
+
+    @Override
+    public int frameCount() {
+        return ticks;
+    }
+
+    @Override
+    public void prepare(int index) {
+        if (index != preparedIndex) {
+            prepared = compute(index);
+            preparedIndex = index;
+        }
+    }
+
+    @Override
+    public Map<Integer, LedState> frame(int index) {
+        return index == preparedIndex ? prepared : compute(index);
+    }
+
+    private Map<Integer, LedState> compute(int index) {
+        LocalTime time = firstTick.plusSeconds(index);
+        if (index == 0) {
+            return face(ids, time.getHour(), time.getMinute(), time.getSecond());
+        }
+        LocalTime before = time.minusSeconds(1);
+        int[] previous = hands(before.getHour(), before.getMinute(), before.getSecond(), ids.length);
+        int[] hands = hands(time.getHour(), time.getMinute(), time.getSecond(), ids.length);
+
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        // only LEDs under an old or a new hand can change
+        for (int[] handSet : new int[][]{previous, hands}) {
+            for (int led : handSet) {
+                LedState state = stateAt(led, hands);
+                if (!state.equals(stateAt(led, previous))) {
+                    frame.put(ids[led], state);
+                }
+            }
+        }
+        return frame;
+    }
+
+    static int hourIndex(int hours, int minutes, int ledCount) {
+        int h12 = hours % 12;
+        double totalHours = h12 + (minutes / 60.0);  // Stunden mit Minutenanteil
+        double ratio = totalHours / 12.0;
+        double pos = ratio * ledCount;
+        return (int) Math.round(pos) % ledCount;
+    }
+
+    static int index(int value, int maxExclusive, int ledCount) {
+        double ratio = value / (double) maxExclusive;
+        double pos = ratio * ledCount;
+        return (int) Math.round(pos) % ledCount;
+    }
+
+    private static int[] hands(int hours, int minutes, int seconds, int ledCount) {
+        if (ledCount == 0) {
+            return new int[0];
+        }
+        return new int[]{hourIndex(hours, minutes, ledCount), index(minutes, 60, ledCount),
+                index(seconds, 60, ledCount)};
+    }
+
+    private static LedState stateAt(int led, int[] hands) {
+        int rgb = LedController.mixRgb(led == hands[0], led == hands[1], led == hands[2]);
+        return new LedState(rgb, rgb != RgbColor.BLACK); // aus, wenn komplett schwarz
+    }
+}
@@ -0,0 +1,180 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous write path with one latest-wins slot per LED.
+ * <p>
+ * {@link #submit} only stores the wanted state and returns; a background flusher sends everything pending
+ * as one {@link ApiService#setLights} frame. If an LED is written again before the flusher picked it up,
+ * the older state is replaced and never sent. {@link #flush()} waits until everything submitted so far has
+ * been written (or superseded) and reports failed writes.
+ * <p>
+ * With a {@link LedOwnership}, every frame claims its LEDs before it is sent, so async writes do not interleave
+ * with an effect on the same LEDs: they are held back until it ends ({@link LedOwnership.Policy#WAIT}, while
+ * newer submits keep replacing them) or fail with {@link LedBusyException} at the next {@link #flush()}.
+ */
+public class CoalescingLedWriter implements AutoCloseable {
+    private final ApiService apiService;
+    private final LedOwnership ownership;
+    // a virtual thread blocked in Object.wait() would pin its carrier, so this uses a lock and conditions
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = lock.newCondition();
+    private final Condition written = lock.newCondition();
+
+    private Map<Integer, LedState> pending = new LinkedHashMap<>();
+    private long submittedSeq;
+    private long completedSeq;
+    private long sentWrites;
+    private long coalescedWrites;
+    private IOException failure;
+    private Thread flusher;
+    private boolean closed;
+
+    public CoalescingLedWriter(ApiService apiService) {
+        this(apiService, null);
+    }
+
+    public CoalescingLedWriter(ApiService apiService, LedOwnership ownership) {
+        this.apiService = apiService;
+        this.ownership = ownership;
+    }
+
+    /**
+     * Queues the state for the LED, replacing a state that has not been sent yet. Never blocks on I/O.
+     */
+    public void submit(int id, LedState state) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Writer is closed");
+            }
+            if (pending.put(id, state) != null) {
+                coalescedWrites++;
+            }
+            submittedSeq++;
+            if (flusher == null) {
+                flusher = Thread.ofVirtual().name("led-writer").start(this::run);
+            }
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every state submitted before this call has been sent. Throws the first write failure
+     * since the previous flush; failed writes are not retried.
+     */
+    public void flush() throws IOException, InterruptedException {
+        lock.lock();
+        try {
+            long target = submittedSeq;
+            while (completedSeq < target) {
+                written.await();
+            }
+            if (failure != null) {
+                IOException e = failure;
+                failure = null;
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSentWrites() {
+        lock.lock();
+        try {
+            return sentWrites;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCoalescedWrites() {
+        lock.lock();
+        try {
+            return coalescedWrites;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends what is still pending and stops the flusher.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        // inherited from whoever submitted first otherwise
+        RequestPriority.NORMAL.makeCurrent();
+        while (true) {
+            Map<Integer, LedState> batch;
+            long batchSeq;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    work.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                batchSeq = submittedSeq;
+                pending = new LinkedHashMap<>();
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                send(batch);
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                // nobody owns this thread to pass the interrupt to; the frame is reported as failed
+                error = new IOException("Interrupted while waiting for LEDs " + batch.keySet(), e);
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            }
+
+            lock.lock();
+            try {
+                completedSeq = batchSeq;
+                if (error == null) {
+                    sentWrites += batch.size();
+                } else if (failure == null) {
+                    failure = error;
+                }
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void send(Map<Integer, LedState> batch) throws IOException, InterruptedException {
+        if (ownership == null) {
+            apiService.setLights(batch);
+            return;
+        }
+        try (LedOwnership.Lease ignored = ownership.acquire(batch.keySet().stream().mapToInt(Integer::intValue)
+                .toArray())) {
+            apiService.setLights(batch);
+        }
+    }
+}
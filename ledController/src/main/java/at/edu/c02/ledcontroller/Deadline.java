@@ -0,0 +1,80 @@
+package at.edu.c02.ledcontroller;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a call, including all its retries and backoff, has to be finished.
+ */
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(0, false);
+
+    private final long expiresAtNanos;
+    private final boolean bounded;
+
+    private Deadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return afterNanos(timeout.toNanos());
+    }
+
+    public static Deadline afterNanos(long nanos) {
+        return new Deadline(System.nanoTime() + Math.max(0, nanos), true);
+    }
+
+    /**
+     * A deadline that never expires.
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * Remaining time in nanoseconds, 0 once expired, {@link Long#MAX_VALUE} if unbounded.
+     */
+    public long remainingNanos() {
+        return bounded ? Math.max(0, expiresAtNanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+    public long remainingMillis() {
+        return bounded ? TimeUnit.NANOSECONDS.toMillis(remainingNanos()) : Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /**
+     * Returns whichever deadline expires first.
+     */
+    public Deadline min(Deadline other) {
+        if (!bounded) {
+            return other;
+        }
+        if (!other.bounded) {
+            return this;
+        }
+        return expiresAtNanos - other.expiresAtNanos <= 0 ? this : other;
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public void check(String operation) throws DeadlineExceededException {
+        if (isExpired()) {
+            throw new DeadlineExceededException(operation + " missed its deadline");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline[" + remainingMillis() + " ms left]" : "Deadline[none]";
+    }
+}
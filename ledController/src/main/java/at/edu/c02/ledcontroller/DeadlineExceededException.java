@@ -0,0 +1,16 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call gives up because its {@link Deadline} passed, possibly before anything was sent.
+ */
+public class DeadlineExceededException extends IOException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
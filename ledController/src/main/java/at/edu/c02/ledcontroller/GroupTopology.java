@@ -0,0 +1,69 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Ids of the LEDs in our group, discovered from the backend and cached for a TTL.
+ * <p>
+ * Group membership practically never changes while the program runs, so effects and clock ticks only
+ * pay for the full {@code getLights} download once per TTL. Call {@link #invalidate()} after changing the
+ * installation; {@link #refresh()} fetches immediately and also returns the current LED states.
+ */
+public class GroupTopology {
+    static final String TTL_PROPERTY = "hasura.topology.ttl.ms";
+    private static final long DEFAULT_TTL_MS = 60_000L;
+
+    private final ApiService apiService;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    private int[] ids;
+    private long fetchedAtNanos;
+
+    public GroupTopology(ApiService apiService) {
+        this(apiService, Duration.ofMillis(Long.getLong(TTL_PROPERTY, DEFAULT_TTL_MS)));
+    }
+
+    public GroupTopology(ApiService apiService, Duration ttl) {
+        this(apiService, ttl, System::nanoTime);
+    }
+
+    // Visible for testing
+    GroupTopology(ApiService apiService, Duration ttl, LongSupplier nanoClock) {
+        this.apiService = apiService;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the group's LED ids in ascending order, fetching them if the cache is empty or expired.
+     */
+    public synchronized int[] ids() throws IOException {
+        if (ids == null || nanoClock.getAsLong() - fetchedAtNanos >= ttlNanos) {
+            refresh();
+        }
+        return ids.clone();
+    }
+
+    /**
+     * Fetches the group now and returns its lights with their current state, sorted by id.
+     */
+    public synchronized List<Light> refresh() throws IOException {
+        List<Light> lights = apiService.listLights(true).stream()
+                .sorted((a, b) -> Integer.compare(a.id(), b.id()))
+                .toList();
+        ids = lights.stream().mapToInt(Light::id).toArray();
+        fetchedAtNanos = nanoClock.getAsLong();
+        return lights;
+    }
+
+    /**
+     * Drops the cached ids; the next {@link #ids()} call fetches them again.
+     */
+    public synchronized void invalidate() {
+        ids = null;
+    }
+}
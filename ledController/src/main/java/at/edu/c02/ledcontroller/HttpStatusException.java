@@ -0,0 +1,19 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the backend answers with a non-success status that is not retried.
+ */
+public class HttpStatusException extends IOException {
+    private final int statusCode;
+
+    public HttpStatusException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,30 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends a single HTTP exchange. Implementations own connection handling (pooling, keep-alive, timeouts),
+ * so {@link ApiServiceImpl} only deals with paths, retries and JSON.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends the request and returns once the status line and headers are available.
+     * The caller must close the returned response so the connection can be reused.
+     *
+     * @param body request payload, or {@code null} for requests without a body
+     */
+    TransportResponse send(String method, URI uri, Map<String, String> headers, byte[] body) throws IOException;
+
+    /**
+     * Like {@link #send(String, URI, Map, byte[])}, but gives up once {@code timeout} has passed without
+     * a response. Transports without per-request timeouts ignore it.
+     */
+    default TransportResponse send(String method, URI uri, Map<String, String> headers, byte[] body, Duration timeout)
+            throws IOException {
+        return send(method, uri, headers, body);
+    }
+}
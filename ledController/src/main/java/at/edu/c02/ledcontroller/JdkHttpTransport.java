@@ -0,0 +1,88 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * {@link HttpTransport} backed by {@link HttpClient}. The client keeps a pool of keep-alive connections and
+ * multiplexes requests over HTTP/2 when the server offers it, so repeated calls skip the TCP/TLS handshake.
+ */
+public class JdkHttpTransport implements HttpTransport {
+    static final String CONNECT_TIMEOUT_PROPERTY = "hasura.connect.timeout.ms";
+    static final String READ_TIMEOUT_PROPERTY = "hasura.read.timeout.ms";
+    private static final long DEFAULT_CONNECT_TIMEOUT_MS = 5000L;
+    private static final long DEFAULT_READ_TIMEOUT_MS = 10000L;
+
+    private static JdkHttpTransport shared;
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+
+    public JdkHttpTransport() {
+        this(Duration.ofMillis(Long.getLong(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT_MS)),
+                Duration.ofMillis(Long.getLong(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT_MS)));
+    }
+
+    public JdkHttpTransport(Duration connectTimeout, Duration readTimeout) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build(), readTimeout);
+    }
+
+    public JdkHttpTransport(HttpClient client, Duration readTimeout) {
+        this.client = client;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns the process-wide transport so all services share one connection pool.
+     */
+    public static synchronized JdkHttpTransport shared() {
+        if (shared == null) {
+            shared = new JdkHttpTransport();
+        }
+        return shared;
+    }
+
+    @Override
+    public TransportResponse send(String method, URI uri, Map<String, String> headers, byte[] body) throws IOException {
+        return send(method, uri, headers, body, readTimeout);
+    }
+
+    /**
+     * Uses the shorter of {@code timeout} and the configured read timeout.
+     */
+    @Override
+    public TransportResponse send(String method, URI uri, Map<String, String> headers, byte[] body, Duration timeout)
+            throws IOException {
+        if (timeout.isZero() || timeout.isNegative()) {
+            throw new DeadlineExceededException(method + " " + uri + " has no time left");
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(timeout.compareTo(readTimeout) < 0 ? timeout : readTimeout)
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            // HTTP/2 is negotiated via ALPN on TLS; on cleartext it would cost an h2c upgrade attempt per connection
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        headers.forEach(builder::header);
+
+        try {
+            HttpResponse<InputStream> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            return new TransportResponse(response.statusCode(), response.headers().map(), response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + method + " " + uri, e);
+        }
+    }
+}
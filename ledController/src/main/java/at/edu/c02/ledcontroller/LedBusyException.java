@@ -0,0 +1,20 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.Arrays;
+
+/**
+ * Thrown under {@link LedOwnership.Policy#REJECT} when an operation needs LEDs that another operation is
+ * currently driving.
+ */
+public class LedBusyException extends IllegalStateException {
+    private final int[] busyIds;
+
+    public LedBusyException(int[] busyIds) {
+        super("LEDs " + Arrays.toString(busyIds) + " are in use by another operation");
+        this.busyIds = busyIds.clone();
+    }
+
+    public int[] getBusyIds() {
+        return busyIds.clone();
+    }
+}
@@ -0,0 +1,19 @@
+package at.edu.c02.ledcontroller;
+
+/**
+ * One LED whose state differs between two polls.
+ *
+ * @param previous state before, or {@code null} if the LED was not known yet
+ * @param current  state now, or {@code null} if the LED disappeared
+ */
+public record LedChange(int id, LedState previous, LedState current) {
+
+    @Override
+    public String toString() {
+        return "LED " + id + ": " + describe(previous) + " -> " + describe(current);
+    }
+
+    private static String describe(LedState state) {
+        return state == null ? "-" : (state.on() ? "on " : "off ") + state.color();
+    }
+}
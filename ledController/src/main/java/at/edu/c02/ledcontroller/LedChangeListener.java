@@ -0,0 +1,14 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+
+public interface LedChangeListener {
+    void onChange(LedChange change);
+
+    /**
+     * Called when a poll failed, in which case the watcher keeps polling at its slowest interval, or when this
+     * listener's own {@link #onChange} threw.
+     */
+    default void onError(IOException e) {
+    }
+}
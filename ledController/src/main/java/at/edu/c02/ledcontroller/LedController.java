@@ -20,27 +20,92 @@ public interface LedController {
     JSONObject getLight(int id) throws IOException;
 
     void setLed(int id, String color) throws IOException;
+
+    /**
+     * Sets the LED to a packed {@code 0xRRGGBB} color.
+     */
+    void setLed(int id, int rgb) throws IOException;
     /**
      * Turns off all group LEDs.
      */
     void turnOffAllLeds() throws IOException;
 
+    /**
+     * Reads the current state of all group LEDs.
+     */
+    Scene captureScene() throws IOException;
+
+    /**
+     * Puts the group back into the saved scene, writing only the LEDs whose live state differs.
+     *
+     * @return the number of LEDs written
+     */
+    int restoreScene(Scene scene) throws IOException;
+
+    /**
+     * Queues the color without waiting for the backend. If the same LED is set again before the write went
+     * out, only the latest color is sent. Use {@link #flushLeds()} to wait for the queued writes.
+     */
+    void setLedAsync(int id, int rgb);
+
+    /**
+     * Waits until all colors queued with {@link #setLedAsync} so far have been written.
+     */
+    void flushLeds() throws IOException, InterruptedException;
+
     void spinningLed(String color, int turns, long sleepMillis) throws IOException, InterruptedException;
 
     void showTime() throws IOException;
 
     void showTime(int hours, int minutes, int seconds) throws IOException;
 
+    /**
+     * Runs the {@link #showTime() clock} for the given number of seconds, or until the calling thread is
+     * interrupted if {@code seconds <= 0}. Ticks are scheduled on wall-clock second boundaries and only send
+     * the LEDs whose hands moved; tick lateness is reported through {@link #getLastAnimationStats()}.
+     */
+    void clock(int seconds) throws IOException, InterruptedException;
+
     static String mixColors(boolean hour, boolean minute, boolean second) {
-        int r = hour ? 0xFF : 0;
-        int g = minute ? 0xFF : 0;
-        int b = second ? 0xFF : 0;
+        return RgbColor.toHex(mixRgb(hour, minute, second));
+    }
 
-        return String.format("#%02x%02x%02x", r, g, b);
+    /**
+     * Like {@link #mixColors} but returns the packed {@code 0xRRGGBB} color: hour is red, minute green, second blue.
+     */
+    static int mixRgb(boolean hour, boolean minute, boolean second) {
+        return RgbColor.mix(hour, minute, second);
     }
     
      /**
      * Rotates the current group LED states/colors clockwise by the given number of steps.
      */
     void spinningWheel(int steps, long sleepMillis) throws IOException, InterruptedException;
+
+    /**
+     * Computes the frames of {@link #spinningLed} for the current group without sending anything.
+     */
+    Timeline recordSpinningLed(String color, int turns, long sleepMillis) throws IOException;
+
+    /**
+     * Computes the frames of {@link #spinningWheel} from the current colors without sending anything.
+     */
+    Timeline recordSpinningWheel(int steps, long sleepMillis) throws IOException;
+
+    /**
+     * Plays a recorded effect with its original frame timing; its statistics are available afterwards through
+     * {@link #getLastAnimationStats()}.
+     */
+    void replay(Timeline timeline) throws IOException, InterruptedException;
+
+    /**
+     * Returns frame statistics of the last spinning effect, or {@code null} if none has run yet.
+     */
+    AnimationStats getLastAnimationStats();
+
+    /**
+     * Reports every change of a group LED to the listener until the subscription is closed.
+     * All listeners of a controller share one adaptive poller.
+     */
+    LedWatcher.Subscription watch(LedChangeListener listener);
 }
@@ -2,30 +2,94 @@ package at.edu.c02.ledcontroller;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class handles the actual logic
+ * <p>
+ * Safe for concurrent use: every write operation first claims the LEDs it touches in a {@link LedOwnership}.
+ * Operations on disjoint LEDs run in parallel; overlapping ones wait or fail with {@link LedBusyException},
+ * depending on the policy. Whole-group operations (clock, effects, turning everything off) claim the group.
  */
 public class LedControllerImpl implements LedController {
-    private static final int[] GROUP_LED_IDS = {
-            46, 47, 48, 49, 50, 51, 52, 53
-    };
+    private static final Duration TICK_DEADLINE = Duration.ofSeconds(1);
+
     private final ApiService apiService;
-    private final Sleeper sleeper;
+    private final GroupTopology groupTopology;
+    private final AnimationEngine animationEngine;
+    private final LedWatcher watcher;
+    private final CoalescingLedWriter writer;
+    private final LedOwnership ownership;
+    private volatile AnimationStats lastAnimationStats;
 
     public LedControllerImpl(ApiService apiService)
     {
-        this(apiService, Thread::sleep);
+        this(apiService, new AnimationEngine(apiService));
     }
 
-    // Visible for testing
+    // Visible for testing: time only advances through the given sleeper
     LedControllerImpl(ApiService apiService, Sleeper sleeper) {
+        this(apiService, simulatedEngine(apiService, new SleeperClock(sleeper)));
+    }
+
+    LedControllerImpl(ApiService apiService, AnimationEngine animationEngine) {
+        this(apiService, new GroupTopology(apiService), animationEngine);
+    }
+
+    public LedControllerImpl(ApiService apiService, LedOwnership.Policy conflictPolicy) {
+        this(apiService, new GroupTopology(apiService), new AnimationEngine(apiService),
+                new LedOwnership(conflictPolicy));
+    }
+
+    LedControllerImpl(ApiService apiService, GroupTopology groupTopology, AnimationEngine animationEngine) {
+        this(apiService, groupTopology, animationEngine, new LedOwnership());
+    }
+
+    LedControllerImpl(ApiService apiService, GroupTopology groupTopology, AnimationEngine animationEngine,
+                      LedOwnership ownership) {
         this.apiService = apiService;
-        this.sleeper = sleeper;
+        this.groupTopology = groupTopology;
+        this.animationEngine = animationEngine;
+        this.watcher = new LedWatcher(apiService);
+        this.writer = new CoalescingLedWriter(apiService, ownership);
+        this.ownership = ownership;
+    }
+
+    /**
+     * Tells which LEDs are currently driven by an operation of this controller.
+     */
+    public LedOwnership getOwnership() {
+        return ownership;
+    }
+
+    private LedOwnership.Lease own(int... ids) throws IOException {
+        try {
+            return ownership.acquire(ids);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for LEDs " + Arrays.toString(ids), e);
+        }
+    }
+
+    /**
+     * The cached group membership all operations share; invalidate it after changing the installation.
+     */
+    public GroupTopology getGroupTopology() {
+        return groupTopology;
+    }
+
+    private static AnimationEngine simulatedEngine(ApiService apiService, SleeperClock clock) {
+        return new AnimationEngine(apiService, clock, clock);
     }
 
     @Override
@@ -42,9 +106,28 @@ public class LedControllerImpl implements LedController {
     @Override
     public void setLed(int id, String color) throws IOException {
         boolean state = true; // LED einschalten
-        apiService.setLight(id, color, state);
+        try (LedOwnership.Lease ignored = own(id)) {
+            apiService.setLight(id, color, state);
+        }
     }
 
+    @Override
+    public void setLed(int id, int rgb) throws IOException {
+        try (LedOwnership.Lease ignored = own(id)) {
+            apiService.writeLight(id, rgb, true);
+        }
+    }
+
+
+    @Override
+    public void setLedAsync(int id, int rgb) {
+        writer.submit(id, new LedState(rgb, true));
+    }
+
+    @Override
+    public void flushLeds() throws IOException, InterruptedException {
+        writer.flush();
+    }
 
     @Override
     public JSONArray getGroupLeds() throws IOException
@@ -67,9 +150,32 @@ public class LedControllerImpl implements LedController {
     @Override
     public void turnOffAllLeds() throws IOException
     {
-        for (int id : GROUP_LED_IDS) {
-            apiService.setLight(id, "#000000", false);
+        int[] ids = groupTopology.ids();
+        try (LedOwnership.Lease ignored = own(ids)) {
+            apiService.setLights(allOff(ids));
+        }
+    }
+
+    @Override
+    public Scene captureScene() throws IOException {
+        return Scene.of(groupTopology.refresh());
+    }
+
+    @Override
+    public int restoreScene(Scene scene) throws IOException {
+        try (LedOwnership.Lease ignored = own(scene.ids())) {
+            Map<Integer, LedState> changes = scene.diff(captureScene());
+            apiService.setLights(changes);
+            return changes.size();
+        }
+    }
+
+    private static Map<Integer, LedState> allOff(int[] ids) {
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        for (int id : ids) {
+            frame.put(id, LedState.OFF);
         }
+        return frame;
     }
 
     @Override
@@ -89,28 +195,15 @@ public class LedControllerImpl implements LedController {
     @Override
     public void spinningLed(String color, int turns, long sleepMillis) throws IOException, InterruptedException
     {
-        turnOffAllLeds();
-
-        if (turns <= 0) {
-            return;
-        }
-
-        int currentIndex = 0;
-        apiService.setLight(GROUP_LED_IDS[currentIndex], color, true);
-
-        int totalSteps = turns * GROUP_LED_IDS.length;
-        for (int step = 1; step <= totalSteps; step++) {
-            sleeper.sleep(sleepMillis);
-            apiService.setLight(GROUP_LED_IDS[currentIndex], "#000000", false);
-            if (step == totalSteps) {
-                break;
+        int[] ids = groupTopology.ids();
+        try (LedOwnership.Lease ignored = ownership.acquire(ids)) {
+            if (turns <= 0 || ids.length == 0) {
+                apiService.setLights(allOff(ids));
+                return;
             }
 
-            currentIndex = (currentIndex + 1) % GROUP_LED_IDS.length;
-            apiService.setLight(GROUP_LED_IDS[currentIndex], color, true);
+            lastAnimationStats = animationEngine.play(new SpinningLedAnimation(ids, color, turns), sleepMillis);
         }
-
-        turnOffAllLeds();
     }
 
     @Override
@@ -121,45 +214,43 @@ public class LedControllerImpl implements LedController {
 
     @Override
     public void showTime(int hours, int minutes, int seconds) throws IOException {
-        JSONArray groupLeds = getGroupLeds();
-        int ledCount = groupLeds.length();
-        if (ledCount == 0) {
+        int[] ids = groupTopology.ids();
+        if (ids.length == 0) {
             return;
         }
 
-        int hourIndex = mapHourToIndex(hours, minutes, ledCount);
-        int minuteIndex = mapToIndex(minutes, 60, ledCount);
-        int secondIndex = mapToIndex(seconds, 60, ledCount);
-
-        for (int i = 0; i < ledCount; i++) {
-            JSONObject led = groupLeds.getJSONObject(i);
-            int id = led.getInt("id");
-
-            boolean isHour   = (i == hourIndex);
-            boolean isMinute = (i == minuteIndex);
-            boolean isSecond = (i == secondIndex);
+        Map<Integer, LedState> frame = ClockAnimation.face(ids, hours, minutes, seconds);
+        // a tick that is not on the LEDs within a second is already outdated
+        try (LedOwnership.Lease ignored = own(ids)) {
+            apiService.setLights(frame, Deadline.after(TICK_DEADLINE));
+        }
+    }
 
-            String color = LedController.mixColors(isHour, isMinute, isSecond);
-            boolean state = !color.equals("#000000"); // aus, wenn komplett schwarz
+    @Override
+    public void clock(int seconds) throws IOException, InterruptedException {
+        LocalTime now = LocalTime.now();
+        // the first tick is the next full second, so every tick lands on a second boundary
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(TimeUnit.SECONDS.toNanos(1) - now.getNano() + 999_999L);
+        clock(now.withNano(0).plusSeconds(1), delayMillis, seconds);
+    }
 
-            apiService.setLight(id, color, state);
+    void clock(LocalTime firstTick, long delayMillis, int seconds) throws IOException, InterruptedException {
+        int[] ids = groupTopology.ids();
+        if (ids.length == 0) {
+            return;
+        }
+        int ticks = seconds > 0 ? seconds : Animation.ENDLESS;
+        try (LedOwnership.Lease ignored = ownership.acquire(ids)) {
+            lastAnimationStats = animationEngine.play(new ClockAnimation(ids, firstTick, ticks), 1000L, delayMillis);
         }
     }
 
     int mapHourToIndex(int hours, int minutes, int ledCount) {
-        int h12 = hours % 12;
-        double totalHours = h12 + (minutes / 60.0);  // Stunden mit Minutenanteil
-        double ratio = totalHours / 12.0;
-        double pos = ratio * ledCount;
-        int index = (int) Math.round(pos) % ledCount;
-        return index;
+        return ClockAnimation.hourIndex(hours, minutes, ledCount);
     }
 
     int mapToIndex(int value, int maxExclusive, int ledCount) {
-        double ratio = value / (double) maxExclusive;
-        double pos = ratio * ledCount;
-        int index = (int) Math.round(pos) % ledCount;
-        return index;
+        return ClockAnimation.index(value, maxExclusive, ledCount);
     }
 
     @Override
@@ -169,45 +260,67 @@ public class LedControllerImpl implements LedController {
             return;
         }
 
-        JSONObject response = apiService.getLights();
-        JSONArray lights = response.getJSONArray("lights");
+        // claimed before reading the colors, so no other write slips in between; if the group changed since the
+        // ids were cached, the fresh read names LEDs outside the lease and the claim is repeated for those
+        int[] leased = groupTopology.ids();
+        while (true) {
+            try (LedOwnership.Lease ignored = ownership.acquire(leased)) {
+                List<Light> lights = groupTopology.refresh();
+                int[] ids = lights.stream().mapToInt(Light::id).toArray();
+                if (!coversAll(leased, ids)) {
+                    leased = ids;
+                    continue;
+                }
+                if (!lights.isEmpty()) {
+                    lastAnimationStats = animationEngine.play(spinningWheelAnimation(lights, steps), sleepMillis);
+                }
+                return;
+            }
+        }
+    }
 
-        String[] colors = new String[GROUP_LED_IDS.length];
-        boolean[] states = new boolean[GROUP_LED_IDS.length];
+    private static boolean coversAll(int[] leased, int[] ids) {
+        int[] sorted = leased.clone();
+        Arrays.sort(sorted);
+        return Arrays.stream(ids).allMatch(id -> Arrays.binarySearch(sorted, id) >= 0);
+    }
 
-        for (int i = 0; i < GROUP_LED_IDS.length; i++) {
-            JSONObject light = findLight(lights, GROUP_LED_IDS[i]);
-            colors[i] = light.getString("color");
-            states[i] = light.getBoolean("on");
+    private static SpinningWheelAnimation spinningWheelAnimation(List<Light> lights, int steps) {
+        int[] ids = new int[lights.size()];
+        LedState[] states = new LedState[lights.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = lights.get(i).id();
+            states[i] = lights.get(i).state();
         }
+        return new SpinningWheelAnimation(ids, states, steps);
+    }
 
-        for (int step = 0; step < steps; step++) {
-            String lastColor = colors[colors.length - 1];
-            boolean lastState = states[states.length - 1];
-            for (int i = colors.length - 1; i > 0; i--) {
-                colors[i] = colors[i - 1];
-                states[i] = states[i - 1];
-            }
-            colors[0] = lastColor;
-            states[0] = lastState;
+    @Override
+    public Timeline recordSpinningLed(String color, int turns, long sleepMillis) throws IOException {
+        return Timeline.record(new SpinningLedAnimation(groupTopology.ids(), color, turns), sleepMillis);
+    }
 
-            for (int i = 0; i < GROUP_LED_IDS.length; i++) {
-                apiService.setLight(GROUP_LED_IDS[i], colors[i], states[i]);
-            }
+    @Override
+    public Timeline recordSpinningWheel(int steps, long sleepMillis) throws IOException {
+        // the wheel starts from the current colors, so this needs a fresh read anyway
+        List<Light> lights = steps > 0 ? groupTopology.refresh() : List.of();
+        return Timeline.record(spinningWheelAnimation(lights, lights.isEmpty() ? 0 : steps), sleepMillis);
+    }
 
-            if (step < steps - 1) {
-                sleeper.sleep(sleepMillis);
-            }
+    @Override
+    public void replay(Timeline timeline) throws IOException, InterruptedException {
+        try (LedOwnership.Lease ignored = ownership.acquire(timeline.ids())) {
+            lastAnimationStats = animationEngine.play(timeline, timeline.frameMillis());
         }
     }
 
-    private JSONObject findLight(JSONArray lights, int id) {
-        for (int i = 0; i < lights.length(); i++) {
-            JSONObject light = lights.getJSONObject(i);
-            if (light.getInt("id") == id) {
-                return light;
-            }
-        }
-        throw new IllegalArgumentException("No light found for id " + id);
+    @Override
+    public AnimationStats getLastAnimationStats() {
+        return lastAnimationStats;
+    }
+
+    @Override
+    public LedWatcher.Subscription watch(LedChangeListener listener) {
+        return watcher.subscribe(listener);
     }
 }
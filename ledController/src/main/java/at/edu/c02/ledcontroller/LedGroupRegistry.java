@@ -0,0 +1,112 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Services and controllers for many LED groups in one process, keyed by {@code X-Hasura-Group-ID}.
+ * <p>
+ * All groups share one {@link HttpTransport} (and so one connection pool) and one {@link ClientMetrics}, but
+ * every group gets its own {@link RateLimiter}: the backend budgets each group separately, so a throttled
+ * group must not slow down the others.
+ */
+public class LedGroupRegistry {
+
+    public interface GroupTask {
+        void run(String groupId, LedController controller) throws Exception;
+    }
+
+    private final String baseUrl;
+    private final HttpTransport transport;
+    private final Supplier<RateLimiter> rateLimiters;
+    private final ClientMetrics metrics;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    public LedGroupRegistry() {
+        this(ApiServiceImpl.BASE_URL, JdkHttpTransport.shared(), RateLimiter::fromProperties, ClientMetrics.shared());
+    }
+
+    /**
+     * @param rateLimiters called once per group to create its limiter
+     */
+    public LedGroupRegistry(String baseUrl, HttpTransport transport, Supplier<RateLimiter> rateLimiters,
+                            ClientMetrics metrics) {
+        this.baseUrl = baseUrl;
+        this.transport = transport;
+        this.rateLimiters = rateLimiters;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the service for the group, creating it on first use.
+     */
+    public ApiService apiService(String groupId) {
+        return group(groupId).apiService;
+    }
+
+    /**
+     * Returns the controller for the group, creating it on first use. Its writes go through a
+     * {@link ShadowStateApiService} like in {@link Main}.
+     */
+    public LedController controller(String groupId) {
+        return group(groupId).controller;
+    }
+
+    public Set<String> groupIds() {
+        return new TreeSet<>(groups.keySet());
+    }
+
+    /**
+     * Runs the task for every registered group at the same time, one virtual thread per group, and waits
+     * for all of them. The first failure is rethrown with the others attached as suppressed exceptions.
+     */
+    public void forEachConcurrently(GroupTask task) throws IOException, InterruptedException {
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String groupId : groupIds()) {
+                LedController controller = controller(groupId);
+                futures.add(executor.submit(() -> {
+                    task.run(groupId, controller);
+                    return null;
+                }));
+            }
+        }
+
+        IOException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Group group(String groupId) {
+        return groups.computeIfAbsent(groupId, id -> {
+            ApiService apiService = new ApiServiceImpl(baseUrl, id, transport, rateLimiters.get(), metrics);
+            return new Group(apiService, new LedControllerImpl(new ShadowStateApiService(apiService)));
+        });
+    }
+
+    private record Group(ApiService apiService, LedController controller) {
+    }
+}
@@ -0,0 +1,120 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tracks which operation currently drives which LED, so operations on disjoint LEDs run in parallel while
+ * overlapping ones are serialized ({@link Policy#WAIT}) or refused ({@link Policy#REJECT}).
+ * <p>
+ * Ownership is a {@link ConcurrentHashMap} from LED id to {@link Lease}; claiming an LED is one
+ * {@code putIfAbsent}, so there is no global lock and no false sharing between LEDs. An operation claims all of
+ * its LEDs or none: on a conflict it gives back what it already claimed before waiting, so two operations can
+ * never hold each other's LEDs and deadlock.
+ */
+public class LedOwnership {
+    static final String POLICY_PROPERTY = "ledcontroller.conflict.policy";
+
+    public enum Policy {
+        /** Wait until the other operation has released the LEDs. */
+        WAIT,
+        /** Fail right away with a {@link LedBusyException}. */
+        REJECT;
+
+        static Policy fromProperty() {
+            return Policy.valueOf(System.getProperty(POLICY_PROPERTY, WAIT.name()).trim().toUpperCase());
+        }
+    }
+
+    /**
+     * LEDs claimed by one operation; closing it releases them.
+     */
+    public final class Lease implements AutoCloseable {
+        private final int[] ids;
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private Lease(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public void close() {
+            for (int id : ids) {
+                owners.remove(id, this);
+            }
+            released.countDown();
+        }
+    }
+
+    private final ConcurrentMap<Integer, Lease> owners = new ConcurrentHashMap<>();
+    private final Policy policy;
+
+    public LedOwnership() {
+        this(Policy.fromProperty());
+    }
+
+    public LedOwnership(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Claims all given LEDs (duplicates are ignored).
+     *
+     * @throws LedBusyException under {@link Policy#REJECT} if any of them is owned by another operation
+     */
+    public Lease acquire(int... ids) throws InterruptedException {
+        int[] sorted = Arrays.stream(ids).distinct().sorted().toArray();
+        while (true) {
+            Lease lease = new Lease(sorted);
+            Lease blocker = tryClaim(lease);
+            if (blocker == null) {
+                return lease;
+            }
+            if (policy == Policy.REJECT) {
+                throw new LedBusyException(busy(sorted));
+            }
+            blocker.released.await();
+        }
+    }
+
+    /**
+     * Returns the LEDs that are owned right now, in ascending order.
+     */
+    public int[] ownedIds() {
+        return owners.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    // claims every id or none; returns the conflicting lease if one id was taken
+    private Lease tryClaim(Lease lease) {
+        for (int i = 0; i < lease.ids.length; i++) {
+            Lease owner = owners.putIfAbsent(lease.ids[i], lease);
+            if (owner != null) {
+                for (int j = 0; j < i; j++) {
+                    owners.remove(lease.ids[j], lease);
+                }
+                // someone may already wait for this half-claimed lease
+                lease.released.countDown();
+                return owner;
+            }
+        }
+        return null;
+    }
+
+    private int[] busy(int[] ids) {
+        List<Integer> busy = new ArrayList<>();
+        for (int id : ids) {
+            if (owners.containsKey(id)) {
+                busy.add(id);
+            }
+        }
+        return busy.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
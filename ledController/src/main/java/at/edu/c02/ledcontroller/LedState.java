@@ -0,0 +1,26 @@
+package at.edu.c02.ledcontroller;
+
+/**
+ * Color ({@code 0xRRGGBB}) and on/off state of a single LED, as sent to {@link ApiService#setLights}.
+ */
+public record LedState(int rgb, boolean on) {
+    public static final LedState OFF = new LedState(RgbColor.BLACK, false);
+
+    /**
+     * @throws IllegalArgumentException if {@code color} is not a {@code "#rrggbb"} or {@code "#rgb"} string
+     */
+    public LedState(String color, boolean on) {
+        this(RgbColor.parse(color), on);
+    }
+
+    public LedState {
+        rgb &= RgbColor.WHITE;
+    }
+
+    /**
+     * Returns the color as {@code "#rrggbb"}; the string is cached, so this does not allocate for known colors.
+     */
+    public String color() {
+        return RgbColor.toHex(rgb);
+    }
+}
@@ -0,0 +1,175 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Polls the group's lights and tells listeners which LEDs changed since the previous poll.
+ * <p>
+ * The interval adapts: right after a change it drops to {@code minInterval}, and every idle poll doubles it
+ * up to {@code maxInterval}. One watcher serves any number of listeners; it polls only while at least one
+ * is subscribed.
+ */
+public class LedWatcher {
+    private static final Duration DEFAULT_MIN_INTERVAL = Duration.ofMillis(500);
+    private static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(8);
+
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final ApiService apiService;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final Sleeper sleeper;
+    private final List<LedChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private List<Light> snapshot;
+    private LightIndex snapshotIndex;
+    private long intervalMillis;
+    private Thread poller;
+
+    public LedWatcher(ApiService apiService) {
+        this(apiService, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+    }
+
+    public LedWatcher(ApiService apiService, Duration minInterval, Duration maxInterval) {
+        this(apiService, minInterval, maxInterval, Thread::sleep);
+    }
+
+    // Visible for testing
+    LedWatcher(ApiService apiService, Duration minInterval, Duration maxInterval, Sleeper sleeper) {
+        if (minInterval.isNegative() || minInterval.isZero() || maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("Intervals must be positive and min <= max");
+        }
+        this.apiService = apiService;
+        this.minIntervalMillis = minInterval.toMillis();
+        this.maxIntervalMillis = maxInterval.toMillis();
+        this.sleeper = sleeper;
+        this.intervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Adds a listener. If a snapshot exists it first receives every known LED as a change from {@code null},
+     * so it can render the current state without waiting for the next change.
+     */
+    public synchronized Subscription subscribe(LedChangeListener listener) {
+        if (snapshot != null) {
+            for (Light light : snapshot) {
+                listener.onChange(new LedChange(light.id(), null, light.state()));
+            }
+        }
+        listeners.add(listener);
+        if (poller == null) {
+            poller = Thread.ofVirtual().name("led-watcher").start(this::run);
+        }
+        return () -> unsubscribe(listener);
+    }
+
+    // Visible for testing: registers the listener without starting the poller, so pollOnce() can be driven directly
+    void addListener(LedChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    private synchronized void unsubscribe(LedChangeListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && poller != null) {
+            poller.interrupt();
+            poller = null;
+        }
+    }
+
+    private void run() {
+        Thread self = Thread.currentThread();
+        try (RequestPriority.Scope ignored = RequestPriority.BACKGROUND.enter()) {
+            while (isCurrentPoller(self)) {
+                long delay;
+                try {
+                    delay = pollOnce();
+                } catch (IOException e) {
+                    reportError(self, e);
+                    delay = maxIntervalMillis;
+                } catch (RuntimeException e) {
+                    // e.g. an unexpected response; one bad poll must not end the watcher
+                    reportError(self, new IOException("Poll failed: " + e, e));
+                    delay = maxIntervalMillis;
+                }
+                sleeper.sleep(delay);
+            }
+        } catch (InterruptedException e) {
+            // unsubscribed
+        } finally {
+            clearPoller(self);
+        }
+    }
+
+    private void reportError(Thread self, IOException e) {
+        // a poller replaced by a quick unsubscribe and resubscribe must not report to the new subscribers
+        if (isCurrentPoller(self)) {
+            listeners.forEach(listener -> notifyError(listener, e));
+        }
+    }
+
+    // lets the next subscribe() start a fresh poller if this one ended for any reason
+    private synchronized void clearPoller(Thread thread) {
+        if (poller == thread) {
+            poller = null;
+        }
+    }
+
+    private synchronized boolean isCurrentPoller(Thread thread) {
+        return poller == thread;
+    }
+
+    /**
+     * Polls once, notifies listeners about differences and returns the delay until the next poll.
+     */
+    long pollOnce() throws IOException {
+        List<Light> current = apiService.listLights(true);
+        LightIndex currentIndex = LightIndex.of(current);
+
+        List<LedChange> changes = new ArrayList<>();
+        synchronized (this) {
+            for (Light light : current) {
+                Light before = snapshotIndex == null ? null : snapshotIndex.get(light.id());
+                if (before == null || !before.state().equals(light.state())) {
+                    changes.add(new LedChange(light.id(), before == null ? null : before.state(), light.state()));
+                }
+            }
+            if (snapshot != null) {
+                for (Light before : snapshot) {
+                    if (currentIndex.get(before.id()) == null) {
+                        changes.add(new LedChange(before.id(), before.state(), null));
+                    }
+                }
+            }
+            snapshot = current;
+            snapshotIndex = currentIndex;
+            intervalMillis = changes.isEmpty() ? Math.min(maxIntervalMillis, intervalMillis * 2) : minIntervalMillis;
+        }
+
+        // the snapshot already moved on, so a failing listener must not cost the others their changes
+        for (LedChange change : changes) {
+            for (LedChangeListener listener : listeners) {
+                try {
+                    listener.onChange(change);
+                } catch (RuntimeException e) {
+                    notifyError(listener, new IOException("Listener failed on " + change + ": " + e, e));
+                }
+            }
+        }
+        return intervalMillis;
+    }
+
+    private static void notifyError(LedChangeListener listener, IOException e) {
+        try {
+            listener.onError(e);
+        } catch (RuntimeException ignored) {
+            // nothing left to tell a listener that fails on its own errors
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed projection of one entry of the {@code getLights} response.
+ *
+ * @param grouped whether the light belongs to a group ({@code groupByGroup.name} is set)
+ */
+public record Light(int id, int rgb, boolean on, boolean grouped) {
+
+    public LedState state() {
+        return new LedState(rgb, on);
+    }
+
+    /**
+     * Projects an already parsed {@code {"lights": [...]}} response. A missing or malformed color reads as
+     * black, so one bad entry does not fail the whole listing.
+     */
+    static List<Light> fromJson(JSONObject response, boolean groupedOnly) {
+        JSONArray lights = response.getJSONArray("lights");
+        List<Light> result = new ArrayList<>(lights.length());
+        for (int i = 0; i < lights.length(); i++) {
+            JSONObject light = lights.getJSONObject(i);
+            JSONObject group = light.optJSONObject("groupByGroup");
+            boolean grouped = group != null && group.has("name") && !group.isNull("name");
+            if (grouped || !groupedOnly) {
+                int rgb = RgbColor.parseOrDefault(light.optString("color", null), RgbColor.BLACK);
+                result.add(new Light(light.getInt("id"), rgb, light.getBoolean("on"), grouped));
+            }
+        }
+        return result;
+    }
+}
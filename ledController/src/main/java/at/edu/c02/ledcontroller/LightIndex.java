@@ -0,0 +1,119 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.List;
+
+/**
+ * Id to {@link Light} lookup built once per {@code getLights} response. Compact id ranges use a plain array
+ * indexed by {@code id - minId}; sparse ids use an open-addressing table keyed by primitive {@code int}.
+ */
+public final class LightIndex {
+    // a dense table may waste at most this many slots per light
+    private static final int MAX_DENSE_SLOTS_PER_LIGHT = 4;
+
+    private final int minId;
+    private final Light[] dense;
+    private final int[] keys;
+    private final Light[] values;
+    private final int size;
+
+    private LightIndex(int minId, Light[] dense, int[] keys, Light[] values, int size) {
+        this.minId = minId;
+        this.dense = dense;
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    public static LightIndex of(List<Light> lights) {
+        if (lights.isEmpty()) {
+            return new LightIndex(0, new Light[0], null, null, 0);
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (Light light : lights) {
+            min = Math.min(min, light.id());
+            max = Math.max(max, light.id());
+        }
+
+        long span = (long) max - min + 1;
+        if (span <= (long) lights.size() * MAX_DENSE_SLOTS_PER_LIGHT + 64) {
+            Light[] dense = new Light[(int) span];
+            int size = 0;
+            for (Light light : lights) {
+                if (dense[light.id() - min] == null) {
+                    size++;
+                }
+                dense[light.id() - min] = light;
+            }
+            return new LightIndex(min, dense, null, null, size);
+        }
+
+        // power-of-two table at most half full
+        int capacity = Integer.highestOneBit(Math.max(2, lights.size()) * 2 - 1) << 1;
+        int[] keys = new int[capacity];
+        Light[] values = new Light[capacity];
+        int size = 0;
+        for (Light light : lights) {
+            int slot = slot(light.id(), capacity);
+            while (values[slot] != null && keys[slot] != light.id()) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            if (values[slot] == null) {
+                size++;
+            }
+            keys[slot] = light.id();
+            values[slot] = light;
+        }
+        return new LightIndex(0, null, keys, values, size);
+    }
+
+    /**
+     * Returns the light with the given id, or {@code null} if the response did not contain it.
+     */
+    public Light get(int id) {
+        if (dense != null) {
+            long offset = (long) id - minId;
+            return offset >= 0 && offset < dense.length ? dense[(int) offset] : null;
+        }
+        int slot = slot(id, keys.length);
+        while (values[slot] != null) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Like {@link #get} but fails for unknown ids.
+     *
+     * @throws IllegalArgumentException if there is no light with this id
+     */
+    public Light require(int id) {
+        Light light = get(id);
+        if (light == null) {
+            throw new IllegalArgumentException("No light found for id " + id);
+        }
+        return light;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    boolean isDense() {
+        return dense != null;
+    }
+
+    private static int slot(int id, int capacity) {
+        // spread sequential ids over the table
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "LightIndex{size=" + size + ", dense=" + isDense() + "}";
+    }
+}
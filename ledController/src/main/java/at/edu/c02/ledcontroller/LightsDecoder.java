@@ -0,0 +1,399 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming decoder for {@code {"lights": [...]}} responses. Reads the body through a fixed byte buffer and
+ * keeps only {@code id}, {@code color}, {@code on} and whether {@code groupByGroup.name} is set, so no string,
+ * {@code JSONObject} or intermediate array is built for the fields and lights that are thrown away.
+ */
+class LightsDecoder {
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] LIGHTS = ascii("lights");
+    private static final byte[] ID = ascii("id");
+    private static final byte[] COLOR = ascii("color");
+    private static final byte[] ON = ascii("on");
+    private static final byte[] GROUP = ascii("groupByGroup");
+    private static final byte[] NAME = ascii("name");
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    // holds the current key or string value; reused for every string
+    private byte[] text = new byte[64];
+    private int textLength;
+    private final CharSequence textView = new CharSequence() {
+        @Override
+        public int length() {
+            return textLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (text[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return new String(text, 0, textLength, StandardCharsets.UTF_8);
+        }
+    };
+
+    // raw color of the current light, parsed only if the light is kept; colors longer than "#rrggbb" are invalid
+    private final byte[] color = new byte[7];
+    private int colorLength;
+    private final CharSequence colorView = new CharSequence() {
+        @Override
+        public int length() {
+            return colorLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (color[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return new String(color, 0, colorLength, StandardCharsets.US_ASCII);
+        }
+    };
+
+    LightsDecoder(InputStream in) {
+        this.in = in;
+    }
+
+    static List<Light> decode(InputStream in, boolean groupedOnly) throws IOException {
+        return new LightsDecoder(in).decode(groupedOnly);
+    }
+
+    List<Light> decode(boolean groupedOnly) throws IOException {
+        List<Light> result = new ArrayList<>();
+        expect('{');
+        if (peekToken() == '}') {
+            next();
+            throw new IOException("Malformed lights response: missing \"lights\"");
+        }
+        boolean found = false;
+        do {
+            readString();
+            expect(':');
+            if (textEquals(LIGHTS)) {
+                readLights(result, groupedOnly);
+                found = true;
+            } else {
+                skipValue();
+            }
+        } while (nextToken() == ',');
+        if (!found) {
+            throw new IOException("Malformed lights response: missing \"lights\"");
+        }
+        return result;
+    }
+
+    private void readLights(List<Light> result, boolean groupedOnly) throws IOException {
+        expect('[');
+        if (peekToken() == ']') {
+            next();
+            return;
+        }
+        do {
+            readLight(result, groupedOnly);
+        } while (nextTokenIn(',', ']') == ',');
+    }
+
+    private void readLight(List<Light> result, boolean groupedOnly) throws IOException {
+        expect('{');
+        int id = 0;
+        colorLength = 0;
+        boolean on = false;
+        boolean grouped = false;
+        boolean hasId = false;
+        if (peekToken() == '}') {
+            next();
+        } else {
+            do {
+                readString();
+                expect(':');
+                if (textEquals(ID)) {
+                    id = readInt();
+                    hasId = true;
+                } else if (textEquals(COLOR)) {
+                    if (peekToken() != '"') {
+                        // null, a number or a boolean reads as black, like Light.fromJson does
+                        skipValue();
+                        colorLength = 0;
+                    } else {
+                        readString();
+                        colorLength = Math.min(textLength, color.length + 1);
+                        if (colorLength <= color.length) {
+                            System.arraycopy(text, 0, color, 0, colorLength);
+                        }
+                    }
+                } else if (textEquals(ON)) {
+                    on = readBoolean();
+                } else if (textEquals(GROUP)) {
+                    grouped = readGroupHasName();
+                } else {
+                    skipValue();
+                }
+            } while (nextTokenIn(',', '}') == ',');
+        }
+        if (!hasId) {
+            throw new IOException("Malformed lights response: light without id");
+        }
+        if (grouped || !groupedOnly) {
+            // a color the backend stored but we cannot read shows as black, like a missing one
+            int rgb = colorLength > color.length ? RgbColor.BLACK : RgbColor.parseOrDefault(colorView, RgbColor.BLACK);
+            result.add(new Light(id, rgb, on, grouped));
+        }
+    }
+
+    private boolean readGroupHasName() throws IOException {
+        int c = peekToken();
+        if (c != '{') {
+            skipValue();
+            return false;
+        }
+        next();
+        if (peekToken() == '}') {
+            next();
+            return false;
+        }
+        boolean hasName = false;
+        do {
+            readString();
+            expect(':');
+            if (textEquals(NAME)) {
+                hasName = peekToken() != 'n';
+            }
+            skipValue();
+        } while (nextTokenIn(',', '}') == ',');
+        return hasName;
+    }
+
+    private int readInt() throws IOException {
+        int c = peekToken();
+        boolean negative = c == '-';
+        if (negative) {
+            next();
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < limit || fill()) {
+            int b = buffer[position];
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            position++;
+            if (++digits > 10) {
+                throw new IOException("Malformed lights response: number out of range");
+            }
+        }
+        if (digits == 0) {
+            throw new IOException("Malformed lights response: expected number");
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Malformed lights response: number out of range");
+        }
+        return (int) value;
+    }
+
+    private boolean readBoolean() throws IOException {
+        int c = peekToken();
+        if (c == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        if (c == 'f') {
+            expectLiteral("false");
+            return false;
+        }
+        throw new IOException("Malformed lights response: expected boolean");
+    }
+
+    private void readString() throws IOException {
+        expect('"');
+        textLength = 0;
+        while (true) {
+            int b = next();
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                b = readEscape();
+            }
+            if (textLength == text.length) {
+                text = Arrays.copyOf(text, text.length * 2);
+            }
+            text[textLength++] = (byte) b;
+        }
+    }
+
+    private int readEscape() throws IOException {
+        int b = next();
+        switch (b) {
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u': {
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    code = (code << 4) | Character.digit(next(), 16);
+                }
+                // keys and colors are ASCII; anything else only needs to be skipped correctly
+                return code < 0x80 ? code : '?';
+            }
+            default: return b;
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int c = peekToken();
+        switch (c) {
+            case '"':
+                skipString();
+                break;
+            case '{':
+            case '[':
+                skipContainer();
+                break;
+            default:
+                // number, true, false or null
+                while (position < limit || fill()) {
+                    int b = buffer[position];
+                    if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                        break;
+                    }
+                    position++;
+                }
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            int b = next();
+            if (b == '\\') {
+                next();
+            } else if (b == '"') {
+                return;
+            }
+        }
+    }
+
+    private void skipContainer() throws IOException {
+        int depth = 0;
+        do {
+            int b = next();
+            if (b == '"') {
+                position--;
+                skipString();
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (next() != literal.charAt(i)) {
+                throw new IOException("Malformed lights response: expected " + literal);
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = nextToken();
+        if (c != expected) {
+            throw new IOException("Malformed lights response: expected '" + expected + "' but got '" + (char) c + "'");
+        }
+    }
+
+    private int nextTokenIn(char first, char second) throws IOException {
+        int c = nextToken();
+        if (c != first && c != second) {
+            throw new IOException("Malformed lights response: expected '" + first + "' or '" + second + "'");
+        }
+        return c;
+    }
+
+    private int nextToken() throws IOException {
+        int c = peekToken();
+        position++;
+        return c;
+    }
+
+    private int peekToken() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                throw new IOException("Malformed lights response: unexpected end of input");
+            }
+            int b = buffer[position];
+            if (!isWhitespace(b)) {
+                return b;
+            }
+            position++;
+        }
+    }
+
+    private int next() throws IOException {
+        if (position == limit && !fill()) {
+            throw new IOException("Malformed lights response: unexpected end of input");
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private boolean textEquals(byte[] expected) {
+        if (textLength != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -6,15 +6,28 @@ import org.json.JSONObject;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class Main {
     private static final long SPIN_SLEEP_MILLIS = 200L;
     private static final long SPINNING_WHEEL_SLEEP_MILLIS = 1000L;
     /**
      * This is the main program entry point. TODO: add new commands when implementing additional features.
+     * <p>
+     * {@code --batch [file]} runs the commands from the file (or stdin) without prompts, see {@link BatchRunner}.
      */
     public static void main(String[] args) throws IOException {
-        LedController ledController = new LedControllerImpl(new ApiServiceImpl());
+        ApiService apiService = new ShadowStateApiService(new ApiServiceImpl());
+        LedController ledController = new LedControllerImpl(apiService);
+        ClientMetrics.shared().registerMBean();
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(ledController, apiService, args.length > 1 ? args[1] : null));
+        }
+
+        // someone is waiting at the prompt; effects and polling switch to the background lane themselves
+        RequestPriority.INTERACTIVE.makeCurrent();
 
         String input = "";
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
@@ -27,6 +40,12 @@ public class Main {
             System.out.println("Enter 'setled' to set LED color");
             System.out.println("Enter 'spinningled' to start the spinning LED effect");
             System.out.println("Enter 'spinningwheel' to start the spinning wheel effect");
+            System.out.println("Enter 'clock' to show the current time on the group");
+            System.out.println("Enter 'save' to save the group's current colors to a file");
+            System.out.println("Enter 'restore' to restore the group's colors from a file");
+            System.out.println("Enter 'replay' to play a recorded effect from a file");
+            System.out.println("Enter 'watch' to print LED changes until Enter is pressed");
+            System.out.println("Enter 'stats' to show request statistics");
             System.out.println("Enter 'exit' to exit the program");
             System.out.print("> ");
             input = reader.readLine();
@@ -81,10 +100,17 @@ public class Main {
 
                 System.out.println("Which color?");
                 System.out.print("> ");
-                String color = reader.readLine();  // e.g. "#ff00"
+                String color = reader.readLine();  // e.g. "#ff0000"
+                int rgb;
+                try {
+                    rgb = RgbColor.parse(color);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Invalid color, expected #rrggbb or #rgb.");
+                    continue;
+                }
 
                 try {
-                    ledController.setLed(id, color);
+                    ledController.setLed(id, rgb);
                     System.out.println("LED color set!");
                 } catch (IOException e) {
                     System.out.println("Failed to set LED color: " + e.getMessage());
@@ -108,9 +134,12 @@ public class Main {
                 System.out.println("Starting SpinningLed effect...");
                 try {
                     ledController.spinningLed(color, turns, SPIN_SLEEP_MILLIS);
+                    printAnimationStats(ledController);
                 } catch (InterruptedException e) {
                     System.out.println("SpinningLed effect interrupted.");
                     Thread.currentThread().interrupt();
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
                 }
             }
             else if (input.equalsIgnoreCase("spinningwheel")) {
@@ -128,11 +157,130 @@ public class Main {
                 System.out.println("Starting SpinningWheel effect...");
                 try {
                     ledController.spinningWheel(steps, SPINNING_WHEEL_SLEEP_MILLIS);
+                    printAnimationStats(ledController);
                 } catch (InterruptedException e) {
                     System.out.println("SpinningWheel effect interrupted.");
                     Thread.currentThread().interrupt();
                 }
             }
+            else if (input.equalsIgnoreCase("clock")) {
+                System.out.println("For how many seconds? (empty: until Enter is pressed)");
+                System.out.print("> ");
+                String secondsInput = reader.readLine();
+                int seconds = 0;
+                if (secondsInput != null && !secondsInput.isBlank()) {
+                    try {
+                        seconds = Integer.parseInt(secondsInput.trim());
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid number of seconds.");
+                        continue;
+                    }
+                }
+
+                if (seconds <= 0) {
+                    System.out.println("Clock running, press Enter to stop...");
+                }
+                int ticks = seconds;
+                Thread clock = Thread.ofVirtual().name("clock").start(() -> {
+                    try {
+                        ledController.clock(ticks);
+                    } catch (IOException e) {
+                        System.out.println("Clock failed: " + e.getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                if (seconds <= 0) {
+                    reader.readLine();
+                    clock.interrupt();
+                }
+                try {
+                    clock.join();
+                    printAnimationStats(ledController);
+                } catch (InterruptedException e) {
+                    System.out.println("Clock interrupted.");
+                    clock.interrupt();
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else if (input.equalsIgnoreCase("save")) {
+                System.out.println("Which file?");
+                System.out.print("> ");
+                String file = reader.readLine();
+                try {
+                    Scene scene = ledController.captureScene();
+                    scene.write(Path.of(file));
+                    System.out.println("Saved " + scene.size() + " LEDs to " + file + ".");
+                } catch (IOException e) {
+                    System.out.println("Failed to save scene: " + e.getMessage());
+                }
+            }
+            else if (input.equalsIgnoreCase("restore")) {
+                System.out.println("Which file?");
+                System.out.print("> ");
+                String file = reader.readLine();
+                try {
+                    int written = ledController.restoreScene(Scene.read(Path.of(file)));
+                    System.out.println("Scene restored, " + written + " LEDs changed.");
+                } catch (IOException e) {
+                    System.out.println("Failed to restore scene: " + e.getMessage());
+                }
+            }
+            else if (input.equalsIgnoreCase("replay")) {
+                System.out.println("Which file?");
+                System.out.print("> ");
+                String file = reader.readLine();
+                try {
+                    ledController.replay(Timeline.read(Path.of(file)));
+                    printAnimationStats(ledController);
+                } catch (IOException e) {
+                    System.out.println("Failed to replay effect: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    System.out.println("Replay interrupted.");
+                    Thread.currentThread().interrupt();
+                }
+            }
+            else if (input.equalsIgnoreCase("watch")) {
+                System.out.println("Watching group LEDs, press Enter to stop...");
+                try (LedWatcher.Subscription ignored = ledController.watch(new LedChangeListener() {
+                    @Override
+                    public void onChange(LedChange change) {
+                        System.out.println(change);
+                    }
+
+                    @Override
+                    public void onError(IOException e) {
+                        System.out.println("Polling failed: " + e.getMessage());
+                    }
+                })) {
+                    reader.readLine();
+                }
+            }
+            else if (input.equalsIgnoreCase("stats")) {
+                System.out.print(ClientMetrics.shared().report());
+            }
+        }
+    }
+
+    private static int runBatch(LedController ledController, ApiService apiService, String file) throws IOException {
+        try (BufferedReader script = file == null
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(Path.of(file))) {
+            BatchRunner.Summary summary = new BatchRunner(ledController, apiService, System.out).run(script);
+            summary.failureMessages().forEach(message -> System.err.println("Failed: " + message));
+            System.out.println(summary);
+            return summary.failed() == 0 ? 0 : 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch interrupted.");
+            return 1;
+        }
+    }
+
+    private static void printAnimationStats(LedController ledController) {
+        AnimationStats stats = ledController.getLastAnimationStats();
+        if (stats != null) {
+            System.out.println("Effect finished: " + stats);
         }
     }
 }
@@ -0,0 +1,228 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe, adaptive token bucket shared by all requests against one backend budget.
+ * <p>
+ * Requests pass immediately while tokens are left, so bursts up to {@code burst} requests are not delayed.
+ * A 429 halves the refill rate and blocks everyone until {@code Retry-After} has passed; every successful
+ * request then raises the rate again by a small step until {@code maxRatePerSecond} is reached.
+ * <p>
+ * Waiting requests are served by {@link RequestPriority}, oldest first within a lane. A request waiting
+ * longer than {@value #AGING_PROPERTY} ms moves up one lane per period, so background traffic still gets
+ * through under constant interactive load. Background requests leave one token of the burst to the other
+ * lanes, so an interactive request during an animation usually finds a token right away.
+ */
+public class RateLimiter {
+    static final String RATE_PROPERTY = "hasura.rate.per.second";
+    static final String BURST_PROPERTY = "hasura.rate.burst";
+    static final String AGING_PROPERTY = "hasura.rate.aging.ms";
+    private static final long DEFAULT_AGING_MS = 2000L;
+    private static final double DEFAULT_RATE_PER_SECOND = 2.0;
+    private static final int DEFAULT_BURST = 8;
+    private static final double MIN_RATE_PER_SECOND = 0.25;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double INCREASE_STEP = 0.05;
+
+    private static RateLimiter shared;
+
+    private final double maxRatePerSecond;
+    private final int burst;
+    private final LongSupplier nanoClock;
+    private final Sleeper sleeper;
+    private final long agingNanos = agingNanos(Long.getLong(AGING_PROPERTY, DEFAULT_AGING_MS));
+    private final List<Waiter> waiters = new ArrayList<>();
+    private long waiterSeq;
+
+    private double ratePerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+    private long blockedUntilNanos;
+
+    public RateLimiter(double ratePerSecond, int burst) {
+        this(ratePerSecond, burst, System::nanoTime, Thread::sleep);
+    }
+
+    // Visible for testing
+    RateLimiter(double ratePerSecond, int burst, LongSupplier nanoClock, Sleeper sleeper) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.maxRatePerSecond = ratePerSecond;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+        this.lastRefillNanos = nanoClock.getAsLong();
+        this.blockedUntilNanos = lastRefillNanos;
+    }
+
+    /**
+     * Returns the process-wide limiter, configured via {@value #RATE_PROPERTY} and {@value #BURST_PROPERTY}.
+     */
+    public static synchronized RateLimiter shared() {
+        if (shared == null) {
+            shared = fromProperties();
+        }
+        return shared;
+    }
+
+    /**
+     * Creates a new limiter configured via {@value #RATE_PROPERTY} and {@value #BURST_PROPERTY}.
+     */
+    public static RateLimiter fromProperties() {
+        double rate = DEFAULT_RATE_PER_SECOND;
+        String rateProperty = System.getProperty(RATE_PROPERTY);
+        if (rateProperty != null) {
+            try {
+                rate = Double.parseDouble(rateProperty.trim());
+            } catch (NumberFormatException ignored) {
+                // keep the default rate
+            }
+        }
+        return new RateLimiter(rate, Integer.getInteger(BURST_PROPERTY, DEFAULT_BURST));
+    }
+
+    // Visible for testing
+    static long agingNanos(long agingMillis) {
+        // a waiter moves up one lane per aging period, so the period must not be 0
+        if (agingMillis <= 0) {
+            throw new IllegalArgumentException(AGING_PROPERTY + " must be positive, was " + agingMillis);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(agingMillis);
+    }
+
+    /**
+     * Takes one token, waiting only if the bucket is empty or the backend asked us to back off.
+     */
+    public void acquire() throws InterruptedException {
+        tryAcquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes one token if that is possible within the timeout, in the lane of {@link RequestPriority#current()}.
+     * Returns {@code false} right away, without sleeping, if the wait would take longer.
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return tryAcquire(timeout, unit, RequestPriority.current());
+    }
+
+    public boolean tryAcquire(long timeout, TimeUnit unit, RequestPriority priority) throws InterruptedException {
+        long timeoutNanos = unit.toNanos(timeout);
+        long start = nanoClock.getAsLong();
+        Waiter me;
+        synchronized (this) {
+            me = new Waiter(priority.ordinal(), start, waiterSeq++);
+            waiters.add(me);
+        }
+        try {
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    long now = nanoClock.getAsLong();
+                    refill(now);
+                    // tokens the waiters ahead of us will take, plus the reserve background leaves to others
+                    int lane = me.lane(now, agingNanos);
+                    double needed = 1.0 + waitersAhead(me, now)
+                            + (lane == RequestPriority.BACKGROUND.ordinal() ? Math.min(1, burst - 1) : 0);
+                    if (now < blockedUntilNanos) {
+                        waitNanos = blockedUntilNanos - now;
+                    } else if (tokens >= needed) {
+                        tokens -= 1.0;
+                        return true;
+                    } else {
+                        waitNanos = (long) Math.ceil((needed - tokens) / ratePerSecond * TimeUnit.SECONDS.toNanos(1));
+                    }
+                    if (waitNanos > timeoutNanos - (now - start)) {
+                        return false;
+                    }
+                }
+                sleeper.sleep(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999L)));
+            }
+        } finally {
+            synchronized (this) {
+                waiters.remove(me);
+            }
+        }
+    }
+
+    /**
+     * Takes a token only if one is available right now and nobody is waiting for it. Used for optional
+     * requests that are not worth waiting for.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = nanoClock.getAsLong();
+        refill(now);
+        if (now < blockedUntilNanos || tokens < 1.0 + waiters.size()) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+
+    /**
+     * Slowly grows the rate back towards its configured maximum.
+     */
+    public synchronized void onSuccess() {
+        ratePerSecond = Math.min(maxRatePerSecond, ratePerSecond + INCREASE_STEP);
+    }
+
+    /**
+     * Called on a 429: halves the rate, drops the remaining burst and blocks all callers for {@code retryAfterMillis}.
+     */
+    public synchronized void onThrottled(long retryAfterMillis) {
+        long now = nanoClock.getAsLong();
+        refill(now);
+        ratePerSecond = Math.max(MIN_RATE_PER_SECOND, ratePerSecond * DECREASE_FACTOR);
+        tokens = 0;
+        blockedUntilNanos = Math.max(blockedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        // tokens do not accumulate while we are blocked
+        lastRefillNanos = Math.max(lastRefillNanos, blockedUntilNanos);
+    }
+
+    public synchronized double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    private int waitersAhead(Waiter me, long now) {
+        int myLane = me.lane(now, agingNanos);
+        int ahead = 0;
+        for (Waiter other : waiters) {
+            int lane = other.lane(now, agingNanos);
+            if (lane < myLane || (lane == myLane && other.seq < me.seq)) {
+                ahead++;
+            }
+        }
+        return ahead;
+    }
+
+    private static final class Waiter {
+        private final int priority;
+        private final long sinceNanos;
+        private final long seq;
+
+        private Waiter(int priority, long sinceNanos, long seq) {
+            this.priority = priority;
+            this.sinceNanos = sinceNanos;
+            this.seq = seq;
+        }
+
+        // moves up one lane per aging period spent waiting
+        int lane(long now, long agingNanos) {
+            return (int) Math.max(0, priority - (now - sinceNanos) / agingNanos);
+        }
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillNanos) {
+            double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(burst, tokens + elapsedSeconds * ratePerSecond);
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package at.edu.c02.ledcontroller;
+
+/**
+ * Lane of a request in the shared {@link RateLimiter}: when requests wait for the budget, higher lanes are
+ * served first.
+ * <p>
+ * The priority belongs to the calling thread (and threads it starts), so it reaches the limiter through all
+ * {@link ApiService} decorators without extra parameters:
+ * <pre>{@code
+ * try (RequestPriority.Scope ignored = RequestPriority.BACKGROUND.enter()) {
+ *     apiService.setLights(frame);
+ * }
+ * }</pre>
+ */
+public enum RequestPriority {
+    /** A user is waiting for the answer. */
+    INTERACTIVE,
+    /** Default for everything not marked otherwise. */
+    NORMAL,
+    /** Animation frames, polling and other bulk traffic. */
+    BACKGROUND;
+
+    private static final InheritableThreadLocal<RequestPriority> CURRENT = new InheritableThreadLocal<>() {
+        @Override
+        protected RequestPriority initialValue() {
+            return NORMAL;
+        }
+    };
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Returns the priority of requests made by the current thread.
+     */
+    public static RequestPriority current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes this the priority of the current thread until the returned scope is closed.
+     */
+    public Scope enter() {
+        RequestPriority previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> CURRENT.set(previous);
+    }
+
+    /**
+     * Makes this the priority of the current thread for the rest of its life, for threads like the console
+     * loop that have no scope to close. Threads it starts afterwards inherit it.
+     */
+    public void makeCurrent() {
+        CURRENT.set(this);
+    }
+}
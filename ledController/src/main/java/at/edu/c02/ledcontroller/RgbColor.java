@@ -0,0 +1,118 @@
+package at.edu.c02.ledcontroller;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Colors packed into an {@code int} as {@code 0xRRGGBB}, with allocation-free conversion from and to the
+ * {@code "#rrggbb"} strings the backend uses.
+ */
+public final class RgbColor {
+    public static final int BLACK = 0x000000;
+    public static final int WHITE = 0xFFFFFF;
+
+    private static final int CACHE_SIZE = 1024;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // direct-mapped cache of formatted strings; effects only use a handful of colors, so this stays hot
+    private static final String[] HEX_CACHE = new String[CACHE_SIZE];
+
+    private RgbColor() {
+    }
+
+    /**
+     * Parses {@code "#rrggbb"} or {@code "#rgb"} (case-insensitive) without allocating.
+     *
+     * @throws IllegalArgumentException if the string is not a hex color
+     */
+    public static int parse(CharSequence color) {
+        int rgb = tryParse(color);
+        if (rgb < 0) {
+            throw new IllegalArgumentException("Invalid color '" + color + "', expected #rrggbb");
+        }
+        return rgb;
+    }
+
+    /**
+     * Like {@link #parse}, but returns {@code fallback} for {@code null} or anything that is not a hex color.
+     * Meant for colors read back from the backend, which does not validate what clients store.
+     */
+    public static int parseOrDefault(CharSequence color, int fallback) {
+        int rgb = tryParse(color);
+        return rgb < 0 ? fallback : rgb;
+    }
+
+    // -1 if the string is not a hex color
+    private static int tryParse(CharSequence color) {
+        int length = color == null ? 0 : color.length();
+        if (length == 7 && color.charAt(0) == '#') {
+            int rgb = 0;
+            for (int i = 1; i < 7; i++) {
+                int d = digit(color.charAt(i));
+                if (d < 0) {
+                    return -1;
+                }
+                rgb = (rgb << 4) | d;
+            }
+            return rgb;
+        }
+        if (length == 4 && color.charAt(0) == '#') {
+            int rgb = 0;
+            for (int i = 1; i < 4; i++) {
+                int d = digit(color.charAt(i));
+                if (d < 0) {
+                    return -1;
+                }
+                rgb = (rgb << 8) | (d << 4) | d;
+            }
+            return rgb;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the {@code "#rrggbb"} form. Repeated calls for the same color return the cached string.
+     */
+    public static String toHex(int rgb) {
+        rgb &= WHITE;
+        int slot = (rgb ^ (rgb >>> 10) ^ (rgb >>> 20)) & (CACHE_SIZE - 1);
+        String cached = HEX_CACHE[slot];
+        if (cached != null && parse(cached) == rgb) {
+            return cached;
+        }
+        byte[] bytes = new byte[7];
+        writeHex(rgb, bytes, 0);
+        String hex = new String(bytes, StandardCharsets.US_ASCII);
+        HEX_CACHE[slot] = hex;
+        return hex;
+    }
+
+    /**
+     * Writes the 7 ASCII bytes of {@code "#rrggbb"} into {@code target} starting at {@code offset}.
+     */
+    public static void writeHex(int rgb, byte[] target, int offset) {
+        target[offset] = '#';
+        for (int i = 6; i >= 1; i--) {
+            target[offset + i] = HEX_DIGITS[rgb & 0xF];
+            rgb >>>= 4;
+        }
+    }
+
+    /**
+     * Full red/green/blue channels for the flags that are set, e.g. hour + second is {@code 0xFF00FF}.
+     */
+    public static int mix(boolean red, boolean green, boolean blue) {
+        return (red ? 0xFF0000 : 0) | (green ? 0x00FF00 : 0) | (blue ? 0x0000FF : 0);
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
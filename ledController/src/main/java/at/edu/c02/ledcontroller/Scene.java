@@ -0,0 +1,166 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the color and on/off state of a set of LEDs, sorted by id.
+ * <p>
+ * On disk a scene is a 12 byte header ({@code "LEDS"}, format version, LED count) followed by 8 bytes per LED:
+ * the id and the packed state ({@code 0xRRGGBB}, bit 24 set if the LED is on), all big-endian. Files are
+ * written and read through a memory mapping, so even large installations are loaded without copying.
+ */
+public final class Scene {
+    private static final int MAGIC = 0x4C454453; // "LEDS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int ENTRY_BYTES = 8;
+    private static final int ON_BIT = 1 << 24;
+
+    private final int[] ids;
+    private final int[] states;
+
+    private Scene(int[] ids, int[] states) {
+        this.ids = ids;
+        this.states = states;
+    }
+
+    /**
+     * Captures the given lights; duplicate ids keep the last state.
+     */
+    public static Scene of(List<Light> lights) {
+        Map<Integer, LedState> byId = new LinkedHashMap<>();
+        for (Light light : lights) {
+            byId.put(light.id(), light.state());
+        }
+        return of(byId);
+    }
+
+    public static Scene of(Map<Integer, LedState> states) {
+        int[] ids = states.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        int[] packed = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            packed[i] = pack(states.get(ids[i]));
+        }
+        return new Scene(ids, packed);
+    }
+
+    public static Scene read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is not a scene file (too short)");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a scene file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported scene version " + version);
+            }
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != (long) count * ENTRY_BYTES) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            int[] ids = new int[count];
+            int[] states = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = buffer.getInt();
+                states[i] = buffer.getInt();
+                if (i > 0 && ids[i] <= ids[i - 1]) {
+                    throw new IOException(file + " is not sorted by LED id");
+                }
+            }
+            return new Scene(ids, states);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        long size = HEADER_BYTES + (long) ids.length * ENTRY_BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                buffer.putInt(ids[i]).putInt(states[i]);
+            }
+            buffer.force();
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the LED ids in ascending order.
+     */
+    public int[] ids() {
+        return ids.clone();
+    }
+
+    /**
+     * Returns the saved state of the LED, or {@code null} if it is not part of the scene.
+     */
+    public LedState state(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? null : unpack(states[index]);
+    }
+
+    /**
+     * Returns the writes that turn {@code live} into this scene: every LED whose saved state differs from the
+     * live one or that is missing from {@code live}. LEDs that are only in {@code live} are left alone.
+     */
+    public Map<Integer, LedState> diff(Scene live) {
+        Map<Integer, LedState> changes = new LinkedHashMap<>();
+        int j = 0;
+        for (int i = 0; i < ids.length; i++) {
+            // both id arrays are sorted, so one merge pass is enough
+            while (j < live.ids.length && live.ids[j] < ids[i]) {
+                j++;
+            }
+            if (j >= live.ids.length || live.ids[j] != ids[i] || live.states[j] != states[i]) {
+                changes.put(ids[i], unpack(states[i]));
+            }
+        }
+        return changes;
+    }
+
+    public Map<Integer, LedState> toMap() {
+        Map<Integer, LedState> map = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            map.put(ids[i], unpack(states[i]));
+        }
+        return map;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Scene other && Arrays.equals(ids, other.ids) && Arrays.equals(states, other.states);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(ids) + Arrays.hashCode(states);
+    }
+
+    @Override
+    public String toString() {
+        return "Scene" + toMap();
+    }
+
+    private static int pack(LedState state) {
+        return state.rgb() | (state.on() ? ON_BIT : 0);
+    }
+
+    private static LedState unpack(int packed) {
+        return new LedState(packed & RgbColor.WHITE, (packed & ON_BIT) != 0);
+    }
+}
@@ -0,0 +1,239 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ApiService} decorator that remembers the last known state of every LED (from reads and from its own
+ * writes) and drops writes that would not change anything.
+ * <p>
+ * The shadow state only reflects what went through this instance. If something else changes the LEDs, call
+ * {@link #invalidate()} or use the {@code force} variants.
+ */
+public class ShadowStateApiService implements ApiService {
+    private final ApiService delegate;
+    private final Map<Integer, LedState> shadow = new ConcurrentHashMap<>();
+    private final AtomicLong sentWrites = new AtomicLong();
+    private final AtomicLong suppressedWrites = new AtomicLong();
+
+    public ShadowStateApiService(ApiService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public JSONObject getLights() throws IOException {
+        JSONObject response = delegate.getLights();
+        remember(response);
+        return response;
+    }
+
+    @Override
+    public List<Light> listLights(boolean groupedOnly) throws IOException {
+        List<Light> lights = delegate.listLights(groupedOnly);
+        for (Light light : lights) {
+            shadow.put(light.id(), light.state());
+        }
+        return lights;
+    }
+
+    @Override
+    public List<Light> listLights(boolean groupedOnly, Deadline deadline) throws IOException {
+        List<Light> lights = delegate.listLights(groupedOnly, deadline);
+        for (Light light : lights) {
+            shadow.put(light.id(), light.state());
+        }
+        return lights;
+    }
+
+    @Override
+    public JSONObject getLight(int id) throws IOException {
+        JSONObject response = delegate.getLight(id);
+        remember(response);
+        return response;
+    }
+
+    @Override
+    public JSONObject getLight(int id, Deadline deadline) throws IOException {
+        JSONObject response = delegate.getLight(id, deadline);
+        remember(response);
+        return response;
+    }
+
+    @Override
+    public JSONObject setLight(int id, String color, boolean state) throws IOException {
+        return setLight(id, color, state, false);
+    }
+
+    /**
+     * Like {@link #setLight(int, String, boolean)}, but {@code force} sends the write even if the shadow state
+     * says the LED already looks like this. Skipped writes return an empty object.
+     */
+    public JSONObject setLight(int id, String color, boolean state, boolean force) throws IOException {
+        return setLight(id, color, state, force, null);
+    }
+
+    @Override
+    public JSONObject setLight(int id, String color, boolean state, Deadline deadline) throws IOException {
+        return setLight(id, color, state, false, deadline);
+    }
+
+    // a null deadline keeps the delegate's plain overload
+    private JSONObject setLight(int id, String color, boolean state, boolean force, Deadline deadline)
+            throws IOException {
+        LedState wanted;
+        try {
+            wanted = new LedState(color, state);
+        } catch (IllegalArgumentException e) {
+            // let the backend judge colors we cannot parse, but do not cache them
+            shadow.remove(id);
+            JSONObject response = send(id, color, state, deadline);
+            sentWrites.incrementAndGet();
+            return response;
+        }
+        if (!force && wanted.equals(shadow.get(id))) {
+            suppressedWrites.incrementAndGet();
+            return new JSONObject();
+        }
+
+        shadow.remove(id);
+        JSONObject response = send(id, color, state, deadline);
+        sentWrites.incrementAndGet();
+        shadow.put(id, wanted);
+        return response;
+    }
+
+    @Override
+    public JSONObject setLight(int id, int rgb, boolean state) throws IOException {
+        LedState wanted = new LedState(rgb, state);
+        if (wanted.equals(shadow.get(id))) {
+            suppressedWrites.incrementAndGet();
+            return new JSONObject();
+        }
+
+        shadow.remove(id);
+        JSONObject response = delegate.setLight(id, rgb, state);
+        sentWrites.incrementAndGet();
+        shadow.put(id, wanted);
+        return response;
+    }
+
+    @Override
+    public void writeLight(int id, int rgb, boolean on, Deadline deadline) throws IOException {
+        LedState wanted = new LedState(rgb, on);
+        if (wanted.equals(shadow.get(id))) {
+            suppressedWrites.incrementAndGet();
+            return;
+        }
+
+        shadow.remove(id);
+        delegate.writeLight(id, rgb, on, deadline);
+        sentWrites.incrementAndGet();
+        shadow.put(id, wanted);
+    }
+
+    @Override
+    public void setLights(Map<Integer, LedState> states) throws IOException {
+        setLights(states, false);
+    }
+
+    /**
+     * Sends only the entries that differ from the shadow state, or all of them if {@code force} is set.
+     */
+    public void setLights(Map<Integer, LedState> states, boolean force) throws IOException {
+        setLights(states, force, null);
+    }
+
+    @Override
+    public void setLights(Map<Integer, LedState> states, Deadline deadline) throws IOException {
+        setLights(states, false, deadline);
+    }
+
+    private void setLights(Map<Integer, LedState> states, boolean force, Deadline deadline) throws IOException {
+        Map<Integer, LedState> changed = new LinkedHashMap<>();
+        for (Map.Entry<Integer, LedState> entry : states.entrySet()) {
+            LedState wanted = entry.getValue();
+            if (force || !wanted.equals(shadow.get(entry.getKey()))) {
+                changed.put(entry.getKey(), wanted);
+            }
+        }
+        suppressedWrites.addAndGet(states.size() - changed.size());
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // while the write is in flight (or if it fails) the real state is unknown
+        changed.keySet().forEach(shadow::remove);
+        if (deadline == null) {
+            delegate.setLights(changed);
+        } else {
+            delegate.setLights(changed, deadline);
+        }
+        sentWrites.addAndGet(changed.size());
+        shadow.putAll(changed);
+    }
+
+    @Override
+    public void deleteLight(int id) throws IOException {
+        shadow.remove(id);
+        delegate.deleteLight(id);
+    }
+
+    /**
+     * Marks the whole shadow state as stale; the next write to every LED is sent.
+     */
+    public void invalidate() {
+        shadow.clear();
+    }
+
+    /**
+     * Marks a single LED as stale.
+     */
+    public void invalidate(int id) {
+        shadow.remove(id);
+    }
+
+    /**
+     * Returns the last known state of the LED, or {@code null} if it is unknown.
+     */
+    public LedState getCachedState(int id) {
+        return shadow.get(id);
+    }
+
+    public long getSentWrites() {
+        return sentWrites.get();
+    }
+
+    public long getSuppressedWrites() {
+        return suppressedWrites.get();
+    }
+
+    private JSONObject send(int id, String color, boolean state, Deadline deadline) throws IOException {
+        return deadline == null ? delegate.setLight(id, color, state) : delegate.setLight(id, color, state, deadline);
+    }
+
+    private void remember(JSONObject response) {
+        JSONArray lights = response.optJSONArray("lights");
+        if (lights == null) {
+            return;
+        }
+        for (int i = 0; i < lights.length(); i++) {
+            JSONObject light = lights.optJSONObject(i);
+            if (light == null || !light.has("id") || !light.has("color") || !light.has("on")) {
+                continue;
+            }
+            try {
+                shadow.put(light.getInt("id"), new LedState(light.getString("color"), light.getBoolean("on")));
+            } catch (IllegalArgumentException e) {
+                // unknown color format, leave this LED uncached
+                shadow.remove(light.getInt("id"));
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Clock that only advances when someone sleeps through it. Lets tests inject a mock {@link Sleeper}
+ * and still get deterministic frame timing from {@link AnimationEngine}.
+ */
+class SleeperClock implements Sleeper, LongSupplier {
+    private final Sleeper delegate;
+    private long nowNanos;
+
+    SleeperClock(Sleeper delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void sleep(long millis) throws InterruptedException {
+        delegate.sleep(millis);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public synchronized long getAsLong() {
+        return nowNanos;
+    }
+}
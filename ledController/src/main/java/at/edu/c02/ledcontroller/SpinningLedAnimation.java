@@ -0,0 +1,43 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One LED of the given color runs around the group {@code turns} times; all other LEDs stay off.
+ * Frame 0 turns everything off except the first LED, the last frame turns everything off again.
+ */
+public class SpinningLedAnimation implements Animation {
+    private final int[] ids;
+    private final LedState lit;
+    private final int totalSteps;
+
+    public SpinningLedAnimation(int[] ids, String color, int turns) {
+        this.ids = ids.clone();
+        this.lit = new LedState(color, true);
+        this.totalSteps = Math.max(0, turns) * ids.length;
+    }
+
+    @Override
+    public int frameCount() {
+        return totalSteps + 1;
+    }
+
+    @Override
+    public Map<Integer, LedState> frame(int index) {
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        if (index == 0 || index == totalSteps) {
+            for (int id : ids) {
+                frame.put(id, LedState.OFF);
+            }
+            if (index == 0 && totalSteps > 0) {
+                frame.put(ids[0], lit);
+            }
+            return frame;
+        }
+
+        frame.put(ids[(index - 1) % ids.length], LedState.OFF);
+        frame.put(ids[index % ids.length], lit);
+        return frame;
+    }
+}
@@ -0,0 +1,34 @@
+package at.edu.c02.ledcontroller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rotates the given LED states clockwise by one position per frame.
+ */
+public class SpinningWheelAnimation implements Animation {
+    private final int[] ids;
+    private final LedState[] initial;
+    private final int steps;
+
+    public SpinningWheelAnimation(int[] ids, LedState[] initial, int steps) {
+        this.ids = ids.clone();
+        this.initial = initial.clone();
+        this.steps = Math.max(0, steps);
+    }
+
+    @Override
+    public int frameCount() {
+        return steps;
+    }
+
+    @Override
+    public Map<Integer, LedState> frame(int index) {
+        int shift = (index + 1) % ids.length;
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            frame.put(ids[i], initial[Math.floorMod(i - shift, ids.length)]);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,223 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded effect: the LED changes of every frame, ready to be replayed by {@link AnimationEngine} without
+ * computing anything.
+ * <p>
+ * Recording keeps only the LEDs whose state differs from the one they had after the previous frame, so a
+ * spinning LED costs two entries per step regardless of the group size. On disk the timeline is a header
+ * ({@code "LEDT"}, format version, frame period in ms, frame count, number of non-empty frames) followed by
+ * one record per non-empty frame: the frame index as varint delta to the previous record, the varint number
+ * of changes and per change the varint {@code id << 1 | on} plus three color bytes. Frame {@code i} is due
+ * {@code i * frameMillis} after the start.
+ */
+public final class Timeline implements Animation {
+    private static final int MAGIC = 0x4C454454; // "LEDT"
+    private static final int VERSION = 1;
+    // a whole day at one frame per millisecond; also keeps a timeline from ever reading as Animation.ENDLESS
+    static final int MAX_FRAMES = 86_400_000;
+
+    private final long frameMillis;
+    private final int frameCount;
+    // only non-empty frames are stored: their indices in ascending order and their changes
+    private final int[] indices;
+    private final Map<Integer, LedState>[] changes;
+
+    private Timeline(long frameMillis, int frameCount, List<Integer> indices, List<Map<Integer, LedState>> changes) {
+        this.frameMillis = frameMillis;
+        this.frameCount = frameCount;
+        this.indices = indices.stream().mapToInt(Integer::intValue).toArray();
+        this.changes = newFrames(changes.size());
+        changes.toArray(this.changes);
+    }
+
+    /**
+     * Computes all frames of the animation once, without sending anything.
+     */
+    public static Timeline record(Animation animation, long frameMillis) {
+        int frameCount = animation.frameCount();
+        if (frameCount > MAX_FRAMES) {
+            throw new IllegalArgumentException("Cannot record more than " + MAX_FRAMES + " frames");
+        }
+        List<Integer> indices = new ArrayList<>();
+        List<Map<Integer, LedState>> frames = new ArrayList<>();
+        Map<Integer, LedState> current = new HashMap<>();
+        for (int i = 0; i < frameCount; i++) {
+            Map<Integer, LedState> changes = new LinkedHashMap<>();
+            for (Map.Entry<Integer, LedState> entry : animation.frame(i).entrySet()) {
+                if (!entry.getValue().equals(current.put(entry.getKey(), entry.getValue()))) {
+                    changes.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (!changes.isEmpty()) {
+                indices.add(i);
+                frames.add(Collections.unmodifiableMap(changes));
+            }
+        }
+        return new Timeline(Math.max(0L, frameMillis), frameCount, indices, frames);
+    }
+
+    public static Timeline read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    public static Timeline read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a timeline");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported timeline version " + version);
+        }
+        long frameMillis = in.readInt();
+        int frameCount = in.readInt();
+        int records = in.readInt();
+        if (frameMillis < 0 || frameCount < 0 || frameCount > MAX_FRAMES || records < 0 || records > frameCount) {
+            throw new IOException("Corrupt timeline header");
+        }
+
+        // the lists grow with the records actually present, so a made-up count in the header ends in EOF
+        List<Integer> indices = new ArrayList<>();
+        List<Map<Integer, LedState>> frames = new ArrayList<>();
+        int index = -1;
+        for (int r = 0; r < records; r++) {
+            int delta = readVarint(in);
+            index += delta;
+            int changes = readVarint(in);
+            if (delta <= 0 || index < 0 || index >= frameCount || changes < 0) {
+                throw new IOException("Corrupt timeline record " + r);
+            }
+            Map<Integer, LedState> frame = new LinkedHashMap<>();
+            for (int c = 0; c < changes; c++) {
+                int idAndOn = readVarint(in);
+                int rgb = in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+                frame.put(idAndOn >>> 1, new LedState(rgb, (idAndOn & 1) != 0));
+            }
+            indices.add(index);
+            frames.add(Collections.unmodifiableMap(frame));
+        }
+        return new Timeline(frameMillis, frameCount, indices, frames);
+    }
+
+    public void write(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt((int) Math.min(Integer.MAX_VALUE, frameMillis));
+        out.writeInt(frameCount);
+        out.writeInt(indices.length);
+
+        int previous = -1;
+        for (int r = 0; r < indices.length; r++) {
+            writeVarint(out, indices[r] - previous);
+            writeVarint(out, changes[r].size());
+            for (Map.Entry<Integer, LedState> change : changes[r].entrySet()) {
+                if (change.getKey() < 0 || change.getKey() > Integer.MAX_VALUE >>> 1) {
+                    throw new IOException("LED id " + change.getKey() + " cannot be stored in a timeline");
+                }
+                int rgb = change.getValue().rgb();
+                writeVarint(out, change.getKey() << 1 | (change.getValue().on() ? 1 : 0));
+                out.writeByte(rgb >>> 16);
+                out.writeByte(rgb >>> 8);
+                out.writeByte(rgb);
+            }
+            previous = indices[r];
+        }
+        out.flush();
+    }
+
+    public long frameMillis() {
+        return frameMillis;
+    }
+
+    @Override
+    public int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the recorded changes of the frame; the map is shared and must not be modified.
+     */
+    @Override
+    public Map<Integer, LedState> frame(int index) {
+        if (index < 0 || index >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + index + " of " + frameCount);
+        }
+        int r = Arrays.binarySearch(indices, index);
+        return r >= 0 ? changes[r] : Map.of();
+    }
+
+    /**
+     * Returns every LED the timeline touches, in ascending order.
+     */
+    public int[] ids() {
+        return Arrays.stream(changes).flatMap(frame -> frame.keySet().stream()).mapToInt(Integer::intValue)
+                .distinct().sorted().toArray();
+    }
+
+    /**
+     * Total number of recorded LED changes over all frames.
+     */
+    public int changeCount() {
+        int count = 0;
+        for (Map<Integer, LedState> frame : changes) {
+            count += frame.size();
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, LedState>[] newFrames(int count) {
+        return (Map<Integer, LedState>[]) new Map[count];
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Timeline ends in the middle of a record");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint in timeline");
+    }
+}
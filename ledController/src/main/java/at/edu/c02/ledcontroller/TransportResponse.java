@@ -0,0 +1,57 @@
+package at.edu.c02.ledcontroller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Status, headers and a streaming body of a response returned by a {@link HttpTransport}.
+ */
+public class TransportResponse implements Closeable {
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+
+    public TransportResponse(int statusCode, Map<String, List<String>> headers, InputStream body) {
+        this.statusCode = statusCode;
+        // header names are case-insensitive
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach((name, values) -> {
+            if (name != null) {
+                this.headers.put(name, values);
+            }
+        });
+        this.body = body == null ? InputStream.nullInputStream() : body;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the first value of the given header, or {@code null} if it is absent.
+     */
+    public String header(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public InputStream body() {
+        return body;
+    }
+
+    /**
+     * Reads the remaining body. Used for small responses; large ones should be consumed via {@link #body()}.
+     */
+    public byte[] readBody() throws IOException {
+        return body.readAllBytes();
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
@@ -0,0 +1,167 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class AnimationEngineTest {
+
+    private long nowNanos = 0;
+    private final List<Long> sleeps = new ArrayList<>();
+    private final Sleeper sleeper = millis -> {
+        sleeps.add(millis);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    };
+
+    @Test
+    public void sleepsOnlyForTheRestOfEachFrame() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        // every write takes 30 ms
+        doAnswer(invocation -> {
+            nowNanos += TimeUnit.MILLISECONDS.toNanos(30);
+            return null;
+        }).when(apiService).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
+        AnimationEngine engine = new AnimationEngine(apiService, sleeper, () -> nowNanos);
+
+        AnimationStats stats = engine.play(frames(5), 100L);
+
+        assertEquals(List.of(70L, 70L, 70L, 70L), sleeps);
+        assertEquals(5, stats.framesSent());
+        assertEquals(0, stats.framesMerged());
+        assertEquals(10.0, stats.achievedFps(), 1e-9);
+        assertEquals(30L, stats.maxLatenessMillis());
+    }
+
+    @Test
+    public void mergesFramesWhenWritesFallBehind() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        // every write takes 250 ms, so frames are due faster than they can be sent
+        List<Map<Integer, LedState>> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Map<Integer, LedState> frame = (Map<Integer, LedState>) invocation.getArguments()[0];
+            written.add(new LinkedHashMap<>(frame));
+            nowNanos += TimeUnit.MILLISECONDS.toNanos(250);
+            return null;
+        }).when(apiService).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
+        AnimationEngine engine = new AnimationEngine(apiService, sleeper, () -> nowNanos);
+
+        AnimationStats stats = engine.play(frames(6), 100L);
+
+        assertEquals(6, stats.framesSent() + stats.framesMerged());
+        assertEquals(3, stats.framesSent());
+        // merged frames keep every LED change, later frames win
+        Map<Integer, LedState> merged = new LinkedHashMap<>();
+        written.forEach(merged::putAll);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(new LedState("#00000" + i, true), merged.get(i));
+        }
+        assertEquals(new LedState("#000005", true), written.get(written.size() - 1).get(5));
+    }
+
+    @Test
+    public void lateWriteIsAbandonedAndSentWithTheNextFrame() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        List<Map<Integer, LedState>> written = new ArrayList<>();
+        int[] calls = {0};
+        doAnswer(invocation -> {
+            if (calls[0]++ == 0) {
+                nowNanos += TimeUnit.MILLISECONDS.toNanos(100);
+                throw new DeadlineExceededException("frame 0 missed its deadline");
+            }
+            @SuppressWarnings("unchecked")
+            Map<Integer, LedState> frame = (Map<Integer, LedState>) invocation.getArguments()[0];
+            written.add(new LinkedHashMap<>(frame));
+            return null;
+        }).when(apiService).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
+        AnimationEngine engine = new AnimationEngine(apiService, sleeper, () -> nowNanos);
+
+        AnimationStats stats = engine.play(frames(3), 100L);
+
+        assertEquals(1, stats.framesAbandoned());
+        assertEquals(2, stats.framesSent());
+        assertEquals(Map.of(0, new LedState("#000000", true), 1, new LedState("#000001", true)), written.get(0));
+        assertEquals(Map.of(2, new LedState("#000002", true)), written.get(1));
+    }
+
+    @Test
+    public void spinningWheelAnimationRotatesClockwise() {
+        LedState a = new LedState("#aa0000", true);
+        LedState b = new LedState("#00bb00", true);
+        LedState c = LedState.OFF;
+        SpinningWheelAnimation animation = new SpinningWheelAnimation(new int[]{1, 2, 3}, new LedState[]{a, b, c}, 3);
+
+        assertEquals(Map.of(1, c, 2, a, 3, b), animation.frame(0));
+        assertEquals(Map.of(1, b, 2, c, 3, a), animation.frame(1));
+        assertEquals(Map.of(1, a, 2, b, 3, c), animation.frame(2));
+    }
+
+    @Test
+    public void endlessAnimationStopsOnInterruptAndReturnsItsStats() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        AtomicInteger pauses = new AtomicInteger();
+        Sleeper interrupting = millis -> {
+            if (pauses.incrementAndGet() > 3) {
+                throw new InterruptedException();
+            }
+            sleeper.sleep(millis);
+        };
+        AnimationEngine engine = new AnimationEngine(apiService, interrupting, () -> nowNanos);
+
+        try {
+            AnimationStats stats = engine.play(new ClockAnimation(new int[]{1, 2, 3, 4}, LocalTime.of(3, 0, 0),
+                    Animation.ENDLESS), 1000L);
+
+            assertEquals(4, stats.framesSent());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void lastFrameMissingItsDeadlineFailsThePlay() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        int[] calls = {0};
+        doAnswer(invocation -> {
+            if (++calls[0] == 3) {
+                throw new DeadlineExceededException("last frame missed the call timeout");
+            }
+            return null;
+        }).when(apiService).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
+        AnimationEngine engine = new AnimationEngine(apiService, sleeper, () -> nowNanos);
+
+        try {
+            engine.play(frames(3), 100L);
+            fail("the lost last frame must not go unnoticed");
+        } catch (DeadlineExceededException expected) {
+            assertEquals(3, calls[0]);
+        }
+    }
+
+    // frame i sets LED i to "#00000i"
+    private static Animation frames(int count) {
+        return new Animation() {
+            @Override
+            public int frameCount() {
+                return count;
+            }
+
+            @Override
+            public Map<Integer, LedState> frame(int index) {
+                return Map.of(index, new LedState("#00000" + index, true));
+            }
+        };
+    }
+}
@@ -14,7 +14,7 @@ public class ApiServiceImplE2ETest {
 
     @Test
     public void setLightAndReadBackWhenGroupIdConfigured() throws Exception {
-        String groupId = ApiServiceImpl.getGroupId();
+        String groupId = ApiServiceImpl.configuredGroupId();
         Assume.assumeFalse("E2E skipped: set HASURA_GROUP_ID or -Dhasura.group.id to run", "Todo".equalsIgnoreCase(groupId));
 
         ApiService apiService = new ApiServiceImpl();
@@ -5,8 +5,21 @@ import org.json.JSONObject;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class ApiServiceImplTest {
@@ -56,4 +69,205 @@ public class ApiServiceImplTest {
         assertEquals("#abc", sentBody.getString("color"));
         assertTrue(sentBody.getBoolean("state"));
     }
+
+    @Test
+    public void writeLightSendsTemplateBodyAndDiscardsResponse() throws Exception {
+        HttpTransport transport = mock(HttpTransport.class);
+        List<String> bodies = new ArrayList<>();
+        when(transport.send(eq("PUT"), eq(URI.create("http://stub/setLight")), anyMapOf(String.class, String.class),
+                any(byte[].class), any(Duration.class))).thenAnswer(invocation -> {
+                    bodies.add(new String((byte[]) invocation.getArguments()[3], StandardCharsets.UTF_8));
+                    return okResponse("{\"update_lights_by_pk\":{\"id\":46}}");
+                });
+        ApiServiceImpl apiService = new ApiServiceImpl("http://stub", transport, new RateLimiter(100, 100));
+
+        apiService.writeLight(46, 0xff8000, true);
+        apiService.writeLight(-2147483648, 0x0a0b0c, false);
+        apiService.writeLight(7, 0, true);
+
+        for (String body : bodies) {
+            assertEquals(bodies.get(0).length(), body.length());
+        }
+        JSONObject first = new JSONObject(bodies.get(0));
+        assertEquals(46, first.getInt("id"));
+        assertEquals("#ff8000", first.getString("color"));
+        assertTrue(first.getBoolean("state"));
+        JSONObject second = new JSONObject(bodies.get(1));
+        assertEquals(Integer.MIN_VALUE, second.getInt("id"));
+        assertEquals("#0a0b0c", second.getString("color"));
+        assertFalse(second.getBoolean("state"));
+        // the reused buffer must not keep digits of the longer id
+        assertEquals(7, new JSONObject(bodies.get(2)).getInt("id"));
+    }
+
+    @Test
+    public void sendRequestRetriesAfter429AndReturnsParsedBody() throws Exception {
+        HttpTransport transport = mock(HttpTransport.class);
+        TransportResponse throttled = new TransportResponse(429, Map.of("Retry-After", List.of("1")), null);
+        TransportResponse ok = new TransportResponse(200, Map.of(),
+                new ByteArrayInputStream("{\"lights\":[]}".getBytes(StandardCharsets.UTF_8)));
+        when(transport.send(eq("GET"), any(URI.class), anyMapOf(String.class, String.class), isNull(byte[].class),
+                any(Duration.class))).thenReturn(throttled, ok);
+        List<Long> sleeps = new ArrayList<>();
+        long[] nowNanos = {0};
+        RateLimiter rateLimiter = new RateLimiter(2.0, 8, () -> nowNanos[0], millis -> {
+            sleeps.add(millis);
+            nowNanos[0] += millis * 1_000_000L;
+        });
+        ApiServiceImpl apiService = new ApiServiceImpl("http://stub", transport, rateLimiter);
+
+        JSONObject result = apiService.getLights();
+
+        assertEquals(0, result.getJSONArray("lights").length());
+        verify(transport, times(2)).send(eq("GET"), eq(URI.create("http://stub/getLights")),
+                anyMapOf(String.class, String.class), isNull(byte[].class), any(Duration.class));
+        // Retry-After, then one token at the halved rate of 1/s
+        assertEquals(List.of(1000L, 1000L), sleeps);
+        assertEquals(1.05, rateLimiter.getRatePerSecond(), 1e-9);
+    }
+
+    @Test
+    public void sendRequestRecordsMetricsPerEndpoint() throws Exception {
+        HttpTransport transport = mock(HttpTransport.class);
+        when(transport.send(eq("GET"), any(URI.class), anyMapOf(String.class, String.class), isNull(byte[].class),
+                any(Duration.class)))
+                .thenReturn(new TransportResponse(429, Map.of("Retry-After", List.of("0")), null))
+                .thenAnswer(invocation -> okResponse("{\"lights\":[]}"));
+        when(transport.send(eq("PUT"), any(URI.class), anyMapOf(String.class, String.class), any(byte[].class),
+                any(Duration.class)))
+                .thenAnswer(invocation -> okResponse("{}"));
+        long[] nowNanos = {0};
+        RateLimiter rateLimiter = new RateLimiter(100, 100, () -> nowNanos[0], millis -> nowNanos[0] += millis * 1_000_000L);
+        ClientMetrics metrics = new ClientMetrics();
+        ApiServiceImpl apiService = new ApiServiceImpl("http://stub", transport, rateLimiter, metrics);
+
+        apiService.getLight(46);
+        apiService.setLight(46, "#ff0000", true);
+
+        assertEquals(3, metrics.getRequests());
+        assertEquals(1, metrics.getRetries());
+        assertEquals(1, metrics.getThrottledResponses());
+        assertEquals(0, metrics.getFailedCalls());
+        assertEquals("{\"lights\":[]}".length() + "{}".length(), metrics.getBytesReceived());
+        assertTrue(metrics.getBytesSent() > 0);
+        assertEquals(2, metrics.getHistogram("GET", "/lights/47").getCount());
+        assertEquals(1, metrics.getHistogram("PUT", "/setLight").getCount());
+        assertTrue(metrics.getEndpointLatencies().containsKey("GET /lights/{id}"));
+    }
+
+    @Test
+    public void retryAfterBeyondTheDeadlineGivesUpWithoutWaiting() throws Exception {
+        HttpTransport transport = mock(HttpTransport.class);
+        when(transport.send(eq("PUT"), any(URI.class), anyMapOf(String.class, String.class), any(byte[].class),
+                any(Duration.class)))
+                .thenReturn(new TransportResponse(429, Map.of("Retry-After", List.of("5")), null));
+        ApiServiceImpl apiService = new ApiServiceImpl("http://stub", transport, new RateLimiter(100, 100));
+
+        long start = System.nanoTime();
+        try {
+            apiService.setLight(46, "#ff0000", true, Deadline.after(Duration.ofMillis(200)));
+            fail("expected the deadline to be exceeded");
+        } catch (DeadlineExceededException expected) {
+            // the 5 s backoff does not fit into the 200 ms budget
+        }
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        verify(transport, times(1)).send(eq("PUT"), any(URI.class), anyMapOf(String.class, String.class),
+                any(byte[].class), any(Duration.class));
+    }
+
+    @Test
+    public void setLightsSendsOneBatchMutation() throws Exception {
+        HttpTransport transport = mock(HttpTransport.class);
+        when(transport.send(anyString(), any(URI.class), anyMapOf(String.class, String.class), any(byte[].class),
+                any(Duration.class)))
+                .thenAnswer(invocation -> okResponse("{\"data\":{\"update_lights_many\":[{\"affected_rows\":1}]}}"));
+        ApiServiceImpl apiService = new ApiServiceImpl("https://stub/api/rest", transport, new RateLimiter(100, 100));
+
+        Map<Integer, LedState> states = new LinkedHashMap<>();
+        states.put(46, new LedState("#ff0000", true));
+        states.put(47, LedState.OFF);
+        apiService.setLights(states);
+
+        ArgumentCaptor<byte[]> bodyCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(transport, times(1)).send(eq("POST"), eq(URI.create("https://stub/v1/graphql")),
+                anyMapOf(String.class, String.class), bodyCaptor.capture(), any(Duration.class));
+        JSONObject sent = new JSONObject(new String(bodyCaptor.getValue(), StandardCharsets.UTF_8));
+        assertTrue(sent.getString("query").contains("update_lights_many"));
+        JSONArray updates = sent.getJSONObject("variables").getJSONArray("updates");
+        assertEquals(2, updates.length());
+        assertEquals(46, updates.getJSONObject(0).getJSONObject("where").getJSONObject("id").getInt("_eq"));
+        assertEquals("#ff0000", updates.getJSONObject(0).getJSONObject("_set").getString("color"));
+        assertTrue(updates.getJSONObject(0).getJSONObject("_set").getBoolean("on"));
+        assertFalse(updates.getJSONObject(1).getJSONObject("_set").getBoolean("on"));
+    }
+
+    @Test
+    public void batchBodyIsReusedForFramesOfTheSameSize() throws Exception {
+        byte[] body = ApiServiceImpl.newBatchBody(2);
+        Map<Integer, LedState> first = new LinkedHashMap<>();
+        first.put(-7, new LedState(0x0a0b0c, true));
+        first.put(1234567890, LedState.OFF);
+        Map<Integer, LedState> second = new LinkedHashMap<>();
+        second.put(5, LedState.OFF);
+        second.put(6, new LedState(0xffffff, true));
+
+        ApiServiceImpl.encodeBatch(body, first);
+        ApiServiceImpl.encodeBatch(body, second);
+
+        JSONArray updates = new JSONObject(new String(body, StandardCharsets.US_ASCII))
+                .getJSONObject("variables").getJSONArray("updates");
+        assertEquals(6, updates.getJSONObject(1).getJSONObject("where").getJSONObject("id").getInt("_eq"));
+        assertEquals("#ffffff", updates.getJSONObject(1).getJSONObject("_set").getString("color"));
+        assertTrue(updates.getJSONObject(1).getJSONObject("_set").getBoolean("on"));
+        assertEquals(5, updates.getJSONObject(0).getJSONObject("where").getJSONObject("id").getInt("_eq"));
+        assertFalse(updates.getJSONObject(0).getJSONObject("_set").getBoolean("on"));
+    }
+
+    @Test
+    public void setLightsFallsBackToSingleWritesWhenBatchIsRejected() throws Exception {
+        ApiServiceImpl apiService = spy(new ApiServiceImpl("https://stub/api/rest", mock(HttpTransport.class),
+                new RateLimiter(100, 100)));
+        doReturn(new JSONObject().put("errors", new JSONArray().put(new JSONObject().put("message", "not allowed"))))
+                .when(apiService).sendGraphQl(any(byte[].class), any(Deadline.class));
+        doNothing().when(apiService).writeLight(anyInt(), anyInt(), anyBoolean(), any(Deadline.class));
+
+        Map<Integer, LedState> states = new LinkedHashMap<>();
+        states.put(46, new LedState("#ff0000", true));
+        states.put(47, LedState.OFF);
+        apiService.setLights(states);
+        apiService.setLights(states);
+
+        // the rejected batch is not retried on the next frame
+        verify(apiService, times(1)).sendGraphQl(any(byte[].class), any(Deadline.class));
+        verify(apiService, times(2)).writeLight(eq(46), eq(0xff0000), eq(true), any(Deadline.class));
+        verify(apiService, times(2)).writeLight(eq(47), eq(0), eq(false), any(Deadline.class));
+    }
+
+    @Test
+    public void setLightsFallbackSendsWritesConcurrently() throws Exception {
+        ApiServiceImpl apiService = spy(new ApiServiceImpl("http://stub", mock(HttpTransport.class),
+                new RateLimiter(100, 100)));
+
+        // every write waits until all 8 are in flight, so a sequential fallback would time out
+        CountDownLatch inFlight = new CountDownLatch(8);
+        doAnswer(invocation -> {
+            inFlight.countDown();
+            assertTrue("writes were not sent concurrently", inFlight.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(apiService).writeLight(anyInt(), anyInt(), anyBoolean(), any(Deadline.class));
+
+        Map<Integer, LedState> states = new LinkedHashMap<>();
+        for (int id = 46; id <= 53; id++) {
+            states.put(id, LedState.OFF);
+        }
+        apiService.setLights(states);
+
+        verify(apiService, times(8)).writeLight(anyInt(), anyInt(), anyBoolean(), any(Deadline.class));
+        verify(apiService, never()).sendGraphQl(any(byte[].class), any(Deadline.class));
+    }
+
+    private static TransportResponse okResponse(String body) {
+        return new TransportResponse(200, Map.of(), new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
 }
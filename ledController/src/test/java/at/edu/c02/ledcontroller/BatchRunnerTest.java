@@ -0,0 +1,97 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class BatchRunnerTest {
+    private HasuraSimulator simulator;
+    private ApiService apiService;
+
+    @Before
+    public void start() throws Exception {
+        simulator = new HasuraSimulator(100, 8).latency(HasuraSimulator.Latency.fixed(20));
+        apiService = new ApiServiceImpl(simulator.baseUrl(), new JdkHttpTransport(), new RateLimiter(10_000, 10_000));
+    }
+
+    @After
+    public void stop() {
+        simulator.close();
+    }
+
+    @Test
+    public void pipelinesWritesButKeepsPerLedOrder() throws Exception {
+        StringBuilder script = new StringBuilder("# 200 writes to 50 LEDs\n\n");
+        for (int round = 1; round <= 4; round++) {
+            for (int id = 1; id <= 50; id++) {
+                script.append("setled ").append(id).append(" #0000").append(String.format("%02x", round)).append('\n');
+            }
+        }
+
+        BatchRunner.Summary summary = run(script.toString(), new ByteArrayOutputStream());
+
+        assertEquals(200, summary.commands());
+        assertEquals(0, summary.failed());
+        for (int id = 1; id <= 50; id++) {
+            assertEquals(new LedState(4, true), simulator.state(id));
+        }
+        // sequentially 200 writes at 20 ms each would take at least 4 s
+        assertTrue("took " + summary, summary.elapsedNanos() < 2_000_000_000L);
+    }
+
+    @Test
+    public void otherCommandsSeeAllEarlierWrites() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BatchRunner.Summary summary = run("setled 5 #ff0000\nstatus 5\n", out);
+
+        assertEquals(0, summary.failed());
+        assertEquals("LED 5 is currently on. Color: #ff0000.", out.toString(StandardCharsets.UTF_8).trim());
+    }
+
+    @Test
+    public void failuresAreCountedWithLineNumbers() throws Exception {
+        BatchRunner.Summary summary = run("setled 1 #ff0000\nsetled 2 red\nblink 3\nsetled x #000000\n",
+                new ByteArrayOutputStream());
+
+        assertEquals(4, summary.commands());
+        assertEquals(3, summary.failed());
+        assertTrue(summary.failureMessages().get(0).startsWith("line 2: "));
+        assertTrue(summary.failureMessages().get(1).startsWith("line 3: Unknown command"));
+        assertTrue(summary.failureMessages().get(2).startsWith("line 4: "));
+        assertEquals(new LedState(0xff0000, true), simulator.state(1));
+    }
+
+    @Test
+    public void backendErrorsAreReportedForTheirLine() throws Exception {
+        ApiService failing = mock(ApiService.class);
+        doThrow(new HttpStatusException("Error: PUT /setLight failed with code 500", 500))
+                .when(failing).writeLight(eq(7), eq(0x00ff00), eq(true), any(Deadline.class));
+        when(failing.getLight(7)).thenReturn(new JSONObject().put("lights", new JSONArray()));
+        LedController controller = new LedControllerImpl(failing);
+
+        BatchRunner.Summary summary = new BatchRunner(controller, failing, new PrintStream(new ByteArrayOutputStream()))
+                .run(new BufferedReader(new StringReader("setled 7 #00ff00\nflush\n")));
+
+        assertEquals(1, summary.failed());
+        assertEquals("line 1: Error: PUT /setLight failed with code 500", summary.failureMessages().get(0));
+    }
+
+    private BatchRunner.Summary run(String script, ByteArrayOutputStream out) throws Exception {
+        LedController controller = new LedControllerImpl(apiService);
+        return new BatchRunner(controller, apiService, new PrintStream(out, true, StandardCharsets.UTF_8))
+                .run(new BufferedReader(new StringReader(script)));
+    }
+}
@@ -0,0 +1,53 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClockAnimationTest {
+
+    private static final int[] IDS = {46, 47, 48, 49, 50, 51, 52, 53};
+
+    @Test
+    public void changesAddUpToTheFullClockFaceAcrossMidnight() {
+        LocalTime firstTick = LocalTime.of(23, 58, 30);
+        ClockAnimation animation = new ClockAnimation(IDS, firstTick, 300);
+
+        Map<Integer, LedState> shown = new HashMap<>();
+        for (int i = 0; i < animation.frameCount(); i++) {
+            shown.putAll(animation.frame(i));
+            LocalTime time = firstTick.plusSeconds(i);
+            assertEquals("at " + time, ClockAnimation.face(IDS, time.getHour(), time.getMinute(), time.getSecond()),
+                    shown);
+        }
+    }
+
+    @Test
+    public void ticksSendOnlyTheLedsUnderMovingHands() {
+        ClockAnimation animation = new ClockAnimation(IDS, LocalTime.of(3, 0, 0), 60);
+
+        assertEquals(IDS.length, animation.frame(0).size());
+        for (int i = 1; i < animation.frameCount(); i++) {
+            assertTrue(animation.frame(i).size() <= 2);
+        }
+        // the second hand stays on LED 0 for the first few seconds
+        assertTrue(animation.frame(1).isEmpty());
+    }
+
+    @Test
+    public void endlessClockComputesFramesOnDemand() {
+        ClockAnimation animation = new ClockAnimation(IDS, LocalTime.of(3, 0, 0), Animation.ENDLESS);
+
+        assertEquals(Animation.ENDLESS, animation.frameCount());
+        // a day later the same second shows the same change as on the first day
+        animation.prepare(86_400 + 12);
+        assertEquals(animation.frame(12), animation.frame(86_400 + 12));
+        assertFalse(animation.frame(12).isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class CoalescingLedWriterTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void supersededColorsAreNeverSent() throws Exception {
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+        List<Map<Integer, LedState>> frames = Collections.synchronizedList(new ArrayList<>());
+        ApiService apiService = mock(ApiService.class);
+        doAnswer(invocation -> {
+            frames.add(new LinkedHashMap<>((Map<Integer, LedState>) invocation.getArguments()[0]));
+            if (frames.size() == 1) {
+                firstWriteStarted.countDown();
+                releaseFirstWrite.await();
+            }
+            return null;
+        }).when(apiService).setLights(anyMapOf(Integer.class, LedState.class));
+        CoalescingLedWriter writer = new CoalescingLedWriter(apiService);
+
+        writer.submit(1, new LedState(0x000001, true));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        // the flusher is stuck in the first write; these must neither block nor all be sent
+        for (int rgb = 2; rgb <= 100; rgb++) {
+            writer.submit(1, new LedState(rgb, true));
+        }
+        writer.submit(2, LedState.OFF);
+        releaseFirstWrite.countDown();
+        writer.flush();
+
+        Map<Integer, LedState> second = new LinkedHashMap<>();
+        second.put(1, new LedState(100, true));
+        second.put(2, LedState.OFF);
+        assertEquals(List.of(Map.of(1, new LedState(1, true)), second), frames);
+        assertEquals(98, writer.getCoalescedWrites());
+        assertEquals(3, writer.getSentWrites());
+        writer.close();
+    }
+
+    @Test
+    public void flushReportsFailedWritesOnce() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        doThrow(new IOException("backend down")).when(apiService).setLights(anyMapOf(Integer.class, LedState.class));
+        CoalescingLedWriter writer = new CoalescingLedWriter(apiService);
+
+        writer.submit(1, LedState.OFF);
+        try {
+            writer.flush();
+            fail("expected the write failure");
+        } catch (IOException e) {
+            assertEquals("backend down", e.getMessage());
+        }
+        writer.flush();
+        writer.close();
+    }
+}
@@ -0,0 +1,55 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Mockito.*;
+
+public class GroupTopologyTest {
+    private long nowNanos = 0;
+
+    @Test
+    public void idsAreCachedUntilTheTtlExpires() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(
+                List.of(new Light(48, 0, false, true), new Light(46, 0, false, true)),
+                List.of(new Light(46, 0, false, true), new Light(47, 0, false, true), new Light(48, 0, false, true)));
+        GroupTopology topology = new GroupTopology(apiService, Duration.ofSeconds(10), () -> nowNanos);
+
+        assertArrayEquals(new int[]{46, 48}, topology.ids());
+        nowNanos += Duration.ofSeconds(9).toNanos();
+        assertArrayEquals(new int[]{46, 48}, topology.ids());
+        verify(apiService, times(1)).listLights(true);
+
+        nowNanos += Duration.ofSeconds(1).toNanos();
+        assertArrayEquals(new int[]{46, 47, 48}, topology.ids());
+        verify(apiService, times(2)).listLights(true);
+    }
+
+    @Test
+    public void invalidateForcesAFetch() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(List.of(new Light(1, 0, false, true)));
+        GroupTopology topology = new GroupTopology(apiService, Duration.ofHours(1), () -> nowNanos);
+
+        topology.ids();
+        topology.invalidate();
+        topology.ids();
+
+        verify(apiService, times(2)).listLights(true);
+    }
+
+    @Test
+    public void returnedIdsCannotCorruptTheCache() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(List.of(new Light(1, 0, false, true)));
+        GroupTopology topology = new GroupTopology(apiService, Duration.ofHours(1), () -> nowNanos);
+
+        topology.ids()[0] = 99;
+
+        assertArrayEquals(new int[]{1}, topology.ids());
+    }
+}
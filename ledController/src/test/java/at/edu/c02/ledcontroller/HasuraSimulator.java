@@ -0,0 +1,309 @@
+package at.edu.c02.ledcontroller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Hasura backend. Serves the REST endpoints under {@code /api/rest}
+ * ({@code getLights}, {@code lights/{id}}, {@code setLight}, DELETE {@code lights/{id}}) and the
+ * {@code update_lights_many} mutation on {@code /v1/graphql}, with configurable latency and 429 injection.
+ * <p>
+ * Lights have ids {@code 1..lightCount}; the first {@code groupSize} of them belong to group "Simulated".
+ */
+public class HasuraSimulator implements AutoCloseable {
+    private static final String REST = "/api/rest";
+
+    /**
+     * Latency distribution in milliseconds.
+     */
+    public interface Latency {
+        double sampleMillis(Random random);
+
+        static Latency none() {
+            return random -> 0;
+        }
+
+        static Latency fixed(double millis) {
+            return random -> millis;
+        }
+
+        static Latency uniform(double minMillis, double maxMillis) {
+            return random -> minMillis + random.nextDouble() * (maxMillis - minMillis);
+        }
+
+        /**
+         * Long-tailed latency as seen on real networks; {@code sigma} around 0.5 to 1 gives a visible p99 tail.
+         */
+        static Latency logNormal(double medianMillis, double sigma) {
+            return random -> medianMillis * Math.exp(sigma * random.nextGaussian());
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int lightCount;
+    private final int groupSize;
+    private final int[] colors;
+    private final boolean[] on;
+    private final boolean[] deleted;
+    private volatile Latency latency = Latency.none();
+    private volatile double throttleProbability;
+    private volatile int retryAfterSeconds = 1;
+    private final AtomicLong throttleNext = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final Map<String, AtomicLong> requestsByGroup = new ConcurrentHashMap<>();
+
+    public HasuraSimulator(int lightCount, int groupSize) throws IOException {
+        if (lightCount < 1 || lightCount > 100_000 || groupSize > lightCount) {
+            throw new IllegalArgumentException("lightCount must be 1..100000 and groupSize at most lightCount");
+        }
+        this.lightCount = lightCount;
+        this.groupSize = groupSize;
+        this.colors = new int[lightCount + 1];
+        this.on = new boolean[lightCount + 1];
+        this.deleted = new boolean[lightCount + 1];
+
+        // without TCP_NODELAY small responses wait for delayed ACKs on the client side
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(REST + "/getLights", exchange -> handle(exchange, this::getLights));
+        server.createContext(REST + "/lights/", exchange -> handle(exchange, this::light));
+        server.createContext(REST + "/setLight", exchange -> handle(exchange, this::setLight));
+        server.createContext("/v1/graphql", exchange -> handle(exchange, this::graphQl));
+        server.start();
+    }
+
+    /**
+     * Base URL to pass to {@link ApiServiceImpl#ApiServiceImpl(String, HttpTransport, RateLimiter)}.
+     */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + REST;
+    }
+
+    public HasuraSimulator latency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Answers the given share of requests with 429 and {@code Retry-After: retryAfterSeconds}.
+     */
+    public HasuraSimulator throttle(double probability, int retryAfterSeconds) {
+        this.throttleProbability = probability;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * Answers the next {@code count} requests with 429 and {@code Retry-After: 0}, independent of {@link #throttle}.
+     */
+    public HasuraSimulator throttleNext(int count) {
+        throttleNext.set(count);
+        return this;
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Requests that carried the given {@code X-Hasura-Group-ID}. All groups see the same lights.
+     */
+    public long requestCount(String groupId) {
+        AtomicLong count = requestsByGroup.get(groupId);
+        return count == null ? 0 : count.get();
+    }
+
+    public long throttledCount() {
+        return throttled.get();
+    }
+
+    public synchronized LedState state(int id) {
+        return new LedState(colors[id], on[id]);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, JSONObject body) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String groupId = exchange.getRequestHeaders().getFirst("X-Hasura-Group-ID");
+            if (groupId != null) {
+                requestsByGroup.computeIfAbsent(groupId, id -> new AtomicLong()).incrementAndGet();
+            }
+            // exchange attributes live in the shared HttpContext, so the body is passed on explicitly
+            byte[] requestBytes = exchange.getRequestBody().readAllBytes();
+            JSONObject body = requestBytes.length == 0
+                    ? null
+                    : new JSONObject(new String(requestBytes, StandardCharsets.UTF_8));
+            sleep(latency.sampleMillis(ThreadLocalRandom.current()));
+            boolean forced = throttleNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+            if (forced || throttleProbability > 0 && ThreadLocalRandom.current().nextDouble() < throttleProbability) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", forced ? "0" : String.valueOf(retryAfterSeconds));
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+            handler.handle(exchange, body);
+        } catch (RuntimeException e) {
+            // malformed request: report it like Hasura would instead of dropping the connection
+            send(exchange, 400, new JSONObject().put("error", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void getLights(HttpExchange exchange, JSONObject body) throws IOException {
+        requireMethod(exchange, "GET");
+        StringBuilder sb = new StringBuilder(lightCount * 90).append("{\"lights\":[");
+        synchronized (this) {
+            boolean first = true;
+            for (int id = 1; id <= lightCount; id++) {
+                if (deleted[id]) {
+                    continue;
+                }
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                appendLight(sb, id);
+            }
+        }
+        send(exchange, 200, sb.append("]}").toString());
+    }
+
+    private void light(HttpExchange exchange, JSONObject body) throws IOException {
+        int id = Integer.parseInt(exchange.getRequestURI().getPath().substring((REST + "/lights/").length()));
+        boolean exists = id >= 1 && id <= lightCount && !deleted[id];
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> {
+                StringBuilder sb = new StringBuilder("{\"lights\":[");
+                if (exists) {
+                    synchronized (this) {
+                        appendLight(sb, id);
+                    }
+                }
+                send(exchange, 200, sb.append("]}").toString());
+            }
+            case "DELETE" -> {
+                if (exists) {
+                    synchronized (this) {
+                        deleted[id] = true;
+                    }
+                }
+                send(exchange, 200, new JSONObject().put("delete_lights_by_pk",
+                        exists ? new JSONObject().put("id", id) : JSONObject.NULL));
+            }
+            default -> send(exchange, 405, new JSONObject().put("error", "method not allowed"));
+        }
+    }
+
+    private void setLight(HttpExchange exchange, JSONObject body) throws IOException {
+        requireMethod(exchange, "PUT");
+        requireBody(body);
+        int id = body.getInt("id");
+        boolean state = body.getBoolean("state");
+        int rgb = RgbColor.parse(body.getString("color"));
+        if (id < 1 || id > lightCount || deleted[id]) {
+            send(exchange, 200, new JSONObject().put("update_lights_by_pk", JSONObject.NULL));
+            return;
+        }
+        synchronized (this) {
+            colors[id] = rgb;
+            on[id] = state;
+        }
+        send(exchange, 200, new JSONObject().put("update_lights_by_pk", new JSONObject()
+                .put("id", id).put("color", RgbColor.toHex(rgb)).put("on", state)));
+    }
+
+    private void graphQl(HttpExchange exchange, JSONObject body) throws IOException {
+        requireMethod(exchange, "POST");
+        requireBody(body);
+        if (!body.optString("query").contains("update_lights_many")) {
+            send(exchange, 200, new JSONObject().put("errors", new JSONArray()
+                    .put(new JSONObject().put("message", "only update_lights_many is simulated"))));
+            return;
+        }
+        JSONArray updates = body.getJSONObject("variables").getJSONArray("updates");
+        JSONArray affected = new JSONArray();
+        synchronized (this) {
+            for (int i = 0; i < updates.length(); i++) {
+                JSONObject update = updates.getJSONObject(i);
+                int id = update.getJSONObject("where").getJSONObject("id").getInt("_eq");
+                JSONObject set = update.getJSONObject("_set");
+                boolean exists = id >= 1 && id <= lightCount && !deleted[id];
+                if (exists) {
+                    colors[id] = RgbColor.parse(set.getString("color"));
+                    on[id] = set.getBoolean("on");
+                }
+                affected.put(new JSONObject().put("affected_rows", exists ? 1 : 0));
+            }
+        }
+        send(exchange, 200, new JSONObject().put("data", new JSONObject().put("update_lights_many", affected)));
+    }
+
+    private void appendLight(StringBuilder sb, int id) {
+        boolean grouped = id <= groupSize;
+        sb.append("{\"id\":").append(id)
+                .append(",\"color\":\"").append(RgbColor.toHex(colors[id])).append('"')
+                .append(",\"on\":").append(on[id])
+                .append(",\"groupId\":").append(grouped ? "1" : "null")
+                .append(",\"groupByGroup\":").append(grouped ? "{\"name\":\"Simulated\"}" : "null")
+                .append('}');
+    }
+
+    private static void requireBody(JSONObject body) {
+        if (body == null) {
+            throw new IllegalArgumentException("missing request body");
+        }
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!method.equals(exchange.getRequestMethod())) {
+            throw new IllegalArgumentException("expected " + method);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(double millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            long nanos = (long) (millis * 1_000_000);
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
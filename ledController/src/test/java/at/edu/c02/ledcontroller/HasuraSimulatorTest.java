@@ -0,0 +1,134 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HasuraSimulatorTest {
+    private HasuraSimulator simulator;
+    private ApiServiceImpl apiService;
+
+    @Before
+    public void start() throws Exception {
+        simulator = new HasuraSimulator(100, 8);
+        apiService = new ApiServiceImpl(simulator.baseUrl(), new JdkHttpTransport(), new RateLimiter(1000, 1000));
+    }
+
+    @After
+    public void stop() {
+        simulator.close();
+    }
+
+    @Test
+    public void servesRestEndpoints() throws Exception {
+        JSONObject update = apiService.setLight(5, "#ff0000", true).getJSONObject("update_lights_by_pk");
+        assertEquals("#ff0000", update.getString("color"));
+
+        JSONObject light = apiService.getLight(5).getJSONArray("lights").getJSONObject(0);
+        assertTrue(light.getBoolean("on"));
+        assertEquals(8, apiService.listLights(true).size());
+        assertEquals(100, apiService.getLights().getJSONArray("lights").length());
+
+        apiService.deleteLight(100);
+        assertEquals(0, apiService.getLight(100).getJSONArray("lights").length());
+        assertEquals(99, apiService.listLights(false).size());
+    }
+
+    @Test
+    public void batchMutationUpdatesAllLightsInOneRequest() throws Exception {
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        frame.put(1, new LedState(0x00ff00, true));
+        frame.put(2, new LedState(0x0000ff, true));
+        long before = simulator.requestCount();
+
+        apiService.setLights(frame);
+
+        assertEquals(before + 1, simulator.requestCount());
+        assertEquals(new LedState(0x00ff00, true), simulator.state(1));
+        assertEquals(new LedState(0x0000ff, true), simulator.state(2));
+    }
+
+    @Test
+    public void injectedThrottlingIsRetried() throws Exception {
+        simulator.throttleNext(1);
+
+        apiService.setLight(1, "#000001", true);
+
+        assertEquals(1, simulator.throttledCount());
+        assertEquals(2, simulator.requestCount());
+        assertEquals(new LedState(1, true), simulator.state(1));
+    }
+
+    @Test
+    public void writesSlowerThanTheFramePeriodAreAbandonedNotFatal() throws Exception {
+        // every write answers after 150 ms, the frames are due every 50 ms
+        simulator.latency(HasuraSimulator.Latency.fixed(150));
+        AnimationEngine engine = new AnimationEngine(apiService);
+
+        AnimationStats stats = engine.play(new SpinningLedAnimation(new int[]{1, 2, 3, 4}, "#ff0000", 1), 50L);
+
+        assertTrue(stats.framesAbandoned() > 0);
+        // the last frame has no deadline and turns everything off
+        for (int id = 1; id <= 4; id++) {
+            assertEquals(LedState.OFF, simulator.state(id));
+        }
+    }
+
+    @Test
+    public void hedgedReadsCutTheSlowTail() throws Exception {
+        // every fifth request stalls; a hedge sent for it is the next request and answers quickly
+        AtomicInteger sequence = new AtomicInteger();
+        simulator.latency(random -> sequence.incrementAndGet() % 5 == 0 ? 400 : 2);
+        ClientMetrics metrics = new ClientMetrics();
+        System.setProperty("hasura.hedge.percentile", "0.5");
+        ApiServiceImpl hedging;
+        try {
+            hedging = new ApiServiceImpl(simulator.baseUrl(), "Test", new JdkHttpTransport(),
+                    new RateLimiter(1000, 1000), metrics);
+        } finally {
+            System.clearProperty("hasura.hedge.percentile");
+        }
+        for (int i = 0; i < 25; i++) {
+            hedging.getLight(1 + i % 8);
+        }
+
+        long slowest = 0;
+        for (int i = 0; i < 25; i++) {
+            long start = System.nanoTime();
+            hedging.getLight(1 + i % 8);
+            slowest = Math.max(slowest, System.nanoTime() - start);
+        }
+
+        assertTrue("slowest read took " + slowest / 1_000_000 + " ms", slowest < 300_000_000L);
+        assertTrue(metrics.getHedgedRequests() > 0);
+        assertTrue(metrics.getHedgesWon() > 0);
+        assertEquals(0, metrics.getFailedCalls());
+    }
+
+    @Test
+    public void harnessReportsThroughputAndPercentiles() throws Exception {
+        simulator.latency(HasuraSimulator.Latency.uniform(1, 3));
+        LedController controller = new LedControllerImpl(apiService);
+
+        LoadTestHarness.Report report = LoadTestHarness.run(controller,
+                (c, sequence) -> c.setLed(1 + sequence % 8, sequence), 200, Duration.ofMillis(500));
+
+        assertEquals(100, report.started());
+        assertEquals(100, report.completed());
+        assertEquals(0, report.failed());
+        assertTrue(report.p50Millis() >= 1);
+        assertTrue(report.p50Millis() <= report.p99Millis());
+        assertTrue(report.p99Millis() <= report.p999Millis());
+        assertFalse(report.throughputPerSecond() <= 0);
+    }
+}
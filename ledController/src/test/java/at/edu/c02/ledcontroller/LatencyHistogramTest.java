@@ -0,0 +1,50 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithBoundedError() {
+        for (long micros = 0; micros < 10_000_000; micros += 1 + micros / 7) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(micros + " above bucket " + bucket, micros <= upper);
+            assertTrue(micros + " too coarse", upper - micros <= Math.max(1, micros / 32));
+            if (bucket > 0) {
+                assertTrue(micros > LatencyHistogram.upperBoundOf(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformRecordings() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getPercentileMillis(0.50), 500 * 0.04);
+        assertEquals(990, histogram.getPercentileMillis(0.99), 990 * 0.04);
+        assertEquals(1000, histogram.getMaxMillis(), 1e-9);
+        assertEquals(500.5, histogram.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5_000_000);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(0.99), 0);
+        assertEquals(0, histogram.getMaxMillis(), 0);
+    }
+}
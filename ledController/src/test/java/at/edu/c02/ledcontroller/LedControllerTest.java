@@ -3,8 +3,15 @@ package at.edu.c02.ledcontroller;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.*;
@@ -79,23 +86,15 @@ public class LedControllerTest {
     }
 
     @Test
-    public void turnOffAllLedsCallsSetLightForConfiguredIds() throws Exception {
+    public void turnOffAllLedsSendsOneFrameForConfiguredIds() throws Exception {
         ApiService apiService = mock(ApiService.class);
         LedController controller = new LedControllerImpl(apiService);
-
-        when(apiService.setLight(anyInt(), anyString(), anyBoolean())).thenReturn(new JSONObject());
+        stubGroup(apiService, 46, 47, 48, 49, 50, 51, 52, 53);
 
         controller.turnOffAllLeds();
 
-        verify(apiService).setLight(46, "#000000", false);
-        verify(apiService).setLight(47, "#000000", false);
-        verify(apiService).setLight(48, "#000000", false);
-        verify(apiService).setLight(49, "#000000", false);
-        verify(apiService).setLight(50, "#000000", false);
-        verify(apiService).setLight(51, "#000000", false);
-        verify(apiService).setLight(52, "#000000", false);
-        verify(apiService).setLight(53, "#000000", false);
-        verify(apiService, times(8)).setLight(anyInt(), eq("#000000"), eq(false));
+        verify(apiService).listLights(true);
+        verify(apiService).setLights(frame(LedState.OFF, 46, 47, 48, 49, 50, 51, 52, 53));
         verifyNoMoreInteractions(apiService);
     }
 
@@ -104,74 +103,72 @@ public class LedControllerTest {
         ApiService apiService = mock(ApiService.class);
         Sleeper sleeper = mock(Sleeper.class);
         LedControllerImpl controller = new LedControllerImpl(apiService, sleeper);
-
-        when(apiService.setLight(anyInt(), anyString(), anyBoolean())).thenReturn(new JSONObject());
+        stubGroup(apiService, 46, 47, 48, 49, 50, 51, 52, 53);
 
         controller.spinningLed("#ff0000", 1, 5L);
 
         InOrder inOrder = inOrder(apiService, sleeper);
 
-        inOrder.verify(apiService).setLight(46, "#000000", false);
-        inOrder.verify(apiService).setLight(47, "#000000", false);
-        inOrder.verify(apiService).setLight(48, "#000000", false);
-        inOrder.verify(apiService).setLight(49, "#000000", false);
-        inOrder.verify(apiService).setLight(50, "#000000", false);
-        inOrder.verify(apiService).setLight(51, "#000000", false);
-        inOrder.verify(apiService).setLight(52, "#000000", false);
-        inOrder.verify(apiService).setLight(53, "#000000", false);
-
-        inOrder.verify(apiService).setLight(46, "#ff0000", true);
+        Map<Integer, LedState> first = frame(LedState.OFF, 46, 47, 48, 49, 50, 51, 52, 53);
+        first.put(46, new LedState("#ff0000", true));
+        inOrder.verify(apiService).setLights(eq(first), any(Deadline.class));
 
         int[] ids = {46, 47, 48, 49, 50, 51, 52, 53};
         for (int i = 0; i < ids.length - 1; i++) {
             inOrder.verify(sleeper).sleep(5L);
-            inOrder.verify(apiService).setLight(ids[i], "#000000", false);
-            inOrder.verify(apiService).setLight(ids[i + 1], "#ff0000", true);
+            Map<Integer, LedState> step = new LinkedHashMap<>();
+            step.put(ids[i], LedState.OFF);
+            step.put(ids[i + 1], new LedState("#ff0000", true));
+            inOrder.verify(apiService).setLights(eq(step), any(Deadline.class));
         }
 
         inOrder.verify(sleeper).sleep(5L);
-        inOrder.verify(apiService).setLight(53, "#000000", false);
-
-        inOrder.verify(apiService).setLight(46, "#000000", false);
-        inOrder.verify(apiService).setLight(47, "#000000", false);
-        inOrder.verify(apiService).setLight(48, "#000000", false);
-        inOrder.verify(apiService).setLight(49, "#000000", false);
-        inOrder.verify(apiService).setLight(50, "#000000", false);
-        inOrder.verify(apiService).setLight(51, "#000000", false);
-        inOrder.verify(apiService).setLight(52, "#000000", false);
-        inOrder.verify(apiService).setLight(53, "#000000", false);
-
-        verify(apiService, times(1)).setLight(46, "#ff0000", true);
-        verify(apiService, times(1)).setLight(47, "#ff0000", true);
-        verify(apiService, times(1)).setLight(48, "#ff0000", true);
-        verify(apiService, times(1)).setLight(49, "#ff0000", true);
-        verify(apiService, times(1)).setLight(50, "#ff0000", true);
-        verify(apiService, times(1)).setLight(51, "#ff0000", true);
-        verify(apiService, times(1)).setLight(52, "#ff0000", true);
-        verify(apiService, times(1)).setLight(53, "#ff0000", true);
+        inOrder.verify(apiService).setLights(eq(frame(LedState.OFF, 46, 47, 48, 49, 50, 51, 52, 53)),
+                any(Deadline.class));
+
+        verify(apiService, times(9)).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
         verify(sleeper, times(8)).sleep(5L);
+        verify(apiService).listLights(true);
         verifyNoMoreInteractions(apiService, sleeper);
     }
 
     @Test
-    public void spinningLedWithNoTurnsJustTurnsOff() throws Exception {
+    public void clockWaitsForTheSecondBoundaryAndSendsOnlyMovedHands() throws Exception {
         ApiService apiService = mock(ApiService.class);
         Sleeper sleeper = mock(Sleeper.class);
         LedControllerImpl controller = new LedControllerImpl(apiService, sleeper);
+        stubGroup(apiService, 46, 47, 48, 49, 50, 51, 52, 53);
+
+        // 03:00:11 -> hour on LED 2, minute on LED 0, second on LED 1; a second later the second hand joins the hour
+        controller.clock(LocalTime.of(3, 0, 11), 400L, 2);
 
-        when(apiService.setLight(anyInt(), anyString(), anyBoolean())).thenReturn(new JSONObject());
+        InOrder inOrder = inOrder(apiService, sleeper);
+        Map<Integer, LedState> face = frame(LedState.OFF, 46, 47, 48, 49, 50, 51, 52, 53);
+        face.put(46, new LedState(0x00ff00, true));
+        face.put(47, new LedState(0x0000ff, true));
+        face.put(48, new LedState(0xff0000, true));
+        inOrder.verify(sleeper).sleep(400L);
+        inOrder.verify(apiService).setLights(eq(face), any(Deadline.class));
+
+        Map<Integer, LedState> tick = new LinkedHashMap<>();
+        tick.put(47, LedState.OFF);
+        tick.put(48, new LedState(0xff00ff, true));
+        inOrder.verify(sleeper).sleep(1000L);
+        inOrder.verify(apiService).setLights(eq(tick), any(Deadline.class));
+        assertEquals(2, controller.getLastAnimationStats().framesSent());
+    }
+
+    @Test
+    public void spinningLedWithNoTurnsJustTurnsOff() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        Sleeper sleeper = mock(Sleeper.class);
+        LedControllerImpl controller = new LedControllerImpl(apiService, sleeper);
+        stubGroup(apiService, 46, 47, 48, 49, 50, 51, 52, 53);
 
         controller.spinningLed("#00ff00", 0, 10L);
 
-        verify(apiService).setLight(46, "#000000", false);
-        verify(apiService).setLight(47, "#000000", false);
-        verify(apiService).setLight(48, "#000000", false);
-        verify(apiService).setLight(49, "#000000", false);
-        verify(apiService).setLight(50, "#000000", false);
-        verify(apiService).setLight(51, "#000000", false);
-        verify(apiService).setLight(52, "#000000", false);
-        verify(apiService).setLight(53, "#000000", false);
-        verify(apiService, never()).setLight(anyInt(), eq("#00ff00"), eq(true));
+        verify(apiService).listLights(true);
+        verify(apiService).setLights(frame(LedState.OFF, 46, 47, 48, 49, 50, 51, 52, 53));
         verifyNoMoreInteractions(apiService);
         verifyNoMoreInteractions(sleeper);
     }
@@ -183,12 +180,13 @@ public class LedControllerTest {
 
         // lights[] leer
         JSONArray lights = new JSONArray();
-        when(apiService.getLights()).thenReturn(new JSONObject().put("lights", lights));
+        when(apiService.listLights(true)).thenReturn(Light.fromJson(new JSONObject().put("lights", lights), true));
 
         controller.showTime(12, 0, 0);
 
         // Keine LED → kein setLight()
         verify(apiService, never()).setLight(anyInt(), anyString(), anyBoolean());
+        verify(apiService, never()).setLights(anyMapOf(Integer.class, LedState.class));
     }
 
     @Test
@@ -205,7 +203,7 @@ public class LedControllerTest {
                     .put("on", true)
                     .put("groupByGroup", new JSONObject().put("name", "G")));
         }
-        when(apiService.getLights()).thenReturn(new JSONObject().put("lights", lights));
+        when(apiService.listLights(true)).thenReturn(Light.fromJson(new JSONObject().put("lights", lights), true));
 
         controller.showTime(3, 0, 0);  // 03:00:00
 
@@ -221,13 +219,15 @@ public class LedControllerTest {
         int minuteId = 46 + minuteIndex;
         int secondId = 46 + secondIndex;
 
+        Map<Integer, LedState> written = captureSingleFrame(apiService);
+
         // Erwartete Farben:
         // Minuten + Sekunden auf derselben LED → Grün + Blau = Cyan
-        verify(apiService).setLight(hourId, "#ff0000", true);   // rot
-        verify(apiService).setLight(minuteId, "#00ffff", true); // cyan
+        assertEquals(new LedState("#ff0000", true), written.get(hourId));   // rot
+        assertEquals(new LedState("#00ffff", true), written.get(minuteId)); // cyan
 
         // Alle LEDs wurden gesetzt
-        verify(apiService, times(ledCount)).setLight(anyInt(), anyString(), anyBoolean());
+        assertEquals(ledCount, written.size());
     }
 
     @Test
@@ -244,13 +244,99 @@ public class LedControllerTest {
                     .put("on", true)
                     .put("groupByGroup", new JSONObject().put("name", "G")));
         }
-        when(apiService.getLights()).thenReturn(new JSONObject().put("lights", lights));
+        when(apiService.listLights(true)).thenReturn(Light.fromJson(new JSONObject().put("lights", lights), true));
 
         controller.showTime(0, 0, 0);  // H=M=S=0
 
-        // LED 20 ist Index 0
-        verify(apiService).setLight(46, "#ffffff", true);
-        verify(apiService, times(8)).setLight(anyInt(), anyString(), anyBoolean());
+        // LED 46 ist Index 0
+        Map<Integer, LedState> written = captureSingleFrame(apiService);
+        assertEquals(new LedState("#ffffff", true), written.get(46));
+        assertEquals(8, written.size());
+    }
+
+    @Test
+    public void spinningWheelRotatesCurrentGroupStates() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        Sleeper sleeper = mock(Sleeper.class);
+        LedControllerImpl controller = new LedControllerImpl(apiService, sleeper);
+
+        List<Light> lights = new ArrayList<>();
+        for (int id = 53; id >= 46; id--) {
+            lights.add(new Light(id, id == 46 ? 0xFF0000 : 0, id == 46, true));
+        }
+        when(apiService.listLights(true)).thenReturn(lights);
+
+        controller.spinningWheel(2, 100L);
+
+        Map<Integer, LedState> afterTwoSteps = frame(LedState.OFF, 46, 47, 48, 49, 50, 51, 52, 53);
+        afterTwoSteps.put(48, new LedState(0xFF0000, true));
+        InOrder inOrder = inOrder(apiService, sleeper);
+        inOrder.verify(apiService).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
+        inOrder.verify(sleeper).sleep(100L);
+        inOrder.verify(apiService).setLights(eq(afterTwoSteps), any(Deadline.class));
+    }
+
+    @Test
+    public void groupIsFetchedOnceForRepeatedClockTicks() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        LedControllerImpl controller = new LedControllerImpl(apiService);
+        stubGroup(apiService, 3, 1, 2);
+
+        controller.showTime(0, 0, 0);
+        controller.showTime(0, 0, 20);
+        controller.turnOffAllLeds();
+
+        verify(apiService, times(1)).listLights(true);
+        verify(apiService, never()).getLights();
+        verify(apiService).setLights(frame(LedState.OFF, 1, 2, 3));
+
+        controller.getGroupTopology().invalidate();
+        controller.showTime(0, 0, 40);
+        verify(apiService, times(2)).listLights(true);
+    }
+
+    @Test
+    public void restoreSceneWritesOnlyLedsThatDiffer() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        LedControllerImpl controller = new LedControllerImpl(apiService);
+        Map<Integer, LedState> saved = frame(LedState.OFF, 46, 47, 48);
+        saved.put(47, new LedState("#ff0000", true));
+        when(apiService.listLights(true)).thenReturn(List.of(
+                new Light(46, 0, false, true),
+                new Light(47, 0x00FF00, true, true),
+                new Light(48, 0xFFFFFF, true, true)));
+
+        int written = controller.restoreScene(Scene.of(saved));
+
+        assertEquals(2, written);
+        Map<Integer, LedState> expected = new LinkedHashMap<>();
+        expected.put(47, new LedState("#ff0000", true));
+        expected.put(48, LedState.OFF);
+        verify(apiService).setLights(expected);
+    }
+
+    private static void stubGroup(ApiService apiService, int... ids) throws Exception {
+        List<Light> lights = new ArrayList<>();
+        for (int id : ids) {
+            lights.add(new Light(id, 0, false, true));
+        }
+        when(apiService.listLights(true)).thenReturn(lights);
+    }
+
+    private static Map<Integer, LedState> frame(LedState state, int... ids) {
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        for (int id : ids) {
+            frame.put(id, state);
+        }
+        return frame;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, LedState> captureSingleFrame(ApiService apiService) throws Exception {
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(apiService, times(1)).setLights(captor.capture(), any(Deadline.class));
+        verify(apiService, never()).setLight(anyInt(), anyString(), anyBoolean());
+        return captor.getValue();
     }
 
 
@@ -0,0 +1,76 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LedGroupRegistryTest {
+    private static final double RATE_PER_GROUP = 20.0;
+
+    private HasuraSimulator simulator;
+    private JdkHttpTransport transport;
+
+    @Before
+    public void start() throws Exception {
+        simulator = new HasuraSimulator(64, 8);
+        transport = new JdkHttpTransport();
+    }
+
+    @After
+    public void stop() {
+        simulator.close();
+    }
+
+    @Test
+    public void eachGroupSendsItsOwnGroupId() throws Exception {
+        LedGroupRegistry registry = registry();
+
+        registry.controller("alpha").setLed(1, "#ff0000");
+        registry.controller("beta").setLed(2, "#00ff00");
+        registry.controller("beta").setLed(3, "#0000ff");
+
+        assertSame(registry.controller("alpha"), registry.controller("alpha"));
+        assertNotSame(registry.apiService("alpha"), registry.apiService("beta"));
+        assertEquals(1, simulator.requestCount("alpha"));
+        assertEquals(2, simulator.requestCount("beta"));
+    }
+
+    @Test
+    public void groupsSharingOneTransportKeepTheirRequestsApart() throws Exception {
+        // group g writes g + 1 times, so a request attributed to the wrong group shows up in the counts
+        int groupCount = 16;
+        LedGroupRegistry registry = registry();
+        for (int g = 0; g < groupCount; g++) {
+            registry.controller("group-" + g);
+        }
+
+        registry.forEachConcurrently((groupId, controller) -> {
+            int writes = writesFor(groupId);
+            for (int i = 0; i < writes; i++) {
+                controller.setLed(1 + i % 8, 0x010000 * (i + 1));
+            }
+        });
+
+        long expectedTotal = 0;
+        for (String groupId : registry.groupIds()) {
+            assertEquals(groupId, writesFor(groupId), simulator.requestCount(groupId));
+            expectedTotal += writesFor(groupId);
+        }
+        assertEquals(groupCount, registry.groupIds().size());
+        assertEquals(expectedTotal, simulator.requestCount());
+        assertEquals(0, simulator.requestCount("group-" + groupCount));
+    }
+
+    private static int writesFor(String groupId) {
+        return Integer.parseInt(groupId.substring("group-".length())) + 1;
+    }
+
+    private LedGroupRegistry registry() {
+        return new LedGroupRegistry(simulator.baseUrl(), transport,
+                () -> new RateLimiter(RATE_PER_GROUP, 1), new ClientMetrics());
+    }
+}
@@ -0,0 +1,197 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class LedOwnershipTest {
+
+    @Test
+    public void rejectPolicyRefusesOverlapButNotDisjointLeds() throws Exception {
+        LedOwnership ownership = new LedOwnership(LedOwnership.Policy.REJECT);
+
+        try (LedOwnership.Lease ignored = ownership.acquire(1, 2, 3)) {
+            try {
+                ownership.acquire(3, 4);
+                fail("expected LED 3 to be busy");
+            } catch (LedBusyException e) {
+                assertArrayEquals(new int[]{3}, e.getBusyIds());
+            }
+            // the failed claim must not leave LED 4 behind
+            assertArrayEquals(new int[]{1, 2, 3}, ownership.ownedIds());
+            ownership.acquire(4, 5).close();
+        }
+        assertEquals(0, ownership.ownedIds().length);
+    }
+
+    @Test
+    public void waitPolicyBlocksUntilTheOwnerReleases() throws Exception {
+        LedOwnership ownership = new LedOwnership(LedOwnership.Policy.WAIT);
+        LedOwnership.Lease first = ownership.acquire(7);
+        CountDownLatch acquired = new CountDownLatch(1);
+
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try (LedOwnership.Lease ignored = ownership.acquire(6, 7)) {
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        first.close();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    @Test
+    public void spinningWheelClaimsLedsThatJoinedTheGroupSinceTheIdsWereCached() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(
+                List.of(new Light(46, 0, false, true), new Light(47, 0, false, true)),
+                List.of(new Light(46, 0, false, true), new Light(47, 0, false, true), new Light(48, 0, false, true)));
+        GroupTopology topology = new GroupTopology(apiService);
+        topology.ids();
+        LedOwnership ownership = new LedOwnership(LedOwnership.Policy.REJECT);
+        LedController controller = new LedControllerImpl(apiService, topology,
+                new AnimationEngine(apiService, millis -> { }, System::nanoTime), ownership);
+
+        try (LedOwnership.Lease ignored = ownership.acquire(48)) {
+            controller.spinningWheel(2, 10L);
+            fail("expected LED 48 to be busy");
+        } catch (LedBusyException e) {
+            assertArrayEquals(new int[]{48}, e.getBusyIds());
+        }
+        verify(apiService, never()).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
+    }
+
+    @Test
+    public void asyncWriteWaitsForTheEffectOnTheSameLed() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        List<Light> lights = new ArrayList<>();
+        for (int id = 46; id <= 49; id++) {
+            lights.add(new Light(id, 0, false, true));
+        }
+        when(apiService.listLights(true)).thenReturn(lights);
+        // the effect stops in its first frame pause until released
+        CountDownLatch paused = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        Sleeper sleeper = millis -> {
+            paused.countDown();
+            resume.await();
+        };
+        LedControllerImpl controller = new LedControllerImpl(apiService, sleeper);
+
+        Thread effect = Thread.ofVirtual().start(() -> {
+            try {
+                controller.spinningLed("#ff0000", 1, 5L);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertTrue(paused.await(5, TimeUnit.SECONDS));
+
+        controller.setLedAsync(46, 0x00ff00);
+        Thread.sleep(100);
+        verify(apiService, never()).setLights(anyMapOf(Integer.class, LedState.class));
+
+        resume.countDown();
+        effect.join(5000);
+        controller.flushLeds();
+
+        // the queued write goes out after the effect's final frame, so it is what stays on the LED
+        InOrder inOrder = inOrder(apiService);
+        inOrder.verify(apiService).setLights(eq(Map.of(46, LedState.OFF, 47, LedState.OFF, 48, LedState.OFF,
+                49, LedState.OFF)), any(Deadline.class));
+        inOrder.verify(apiService).setLights(Map.of(46, new LedState(0x00ff00, true)));
+    }
+
+    @Test
+    public void controllerWritesNeverOverlapUnderContention() throws Exception {
+        int[] group = {0, 1, 2, 3, 4, 5, 6, 7};
+        AtomicIntegerArray writers = new AtomicIntegerArray(group.length);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ConcurrentLinkedQueue<String> overlaps = new ConcurrentLinkedQueue<>();
+
+        ApiService apiService = mock(ApiService.class);
+        List<Light> lights = new ArrayList<>();
+        for (int id : group) {
+            lights.add(new Light(id, 0, false, true));
+        }
+        when(apiService.listLights(true)).thenReturn(lights);
+        doAnswer(invocation -> {
+            write(new int[]{(Integer) invocation.getArguments()[0]}, writers, inFlight, maxInFlight, overlaps);
+            return null;
+        }).when(apiService).writeLight(anyInt(), anyInt(), anyBoolean());
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Map<Integer, LedState> frame = (Map<Integer, LedState>) invocation.getArguments()[0];
+            write(frame.keySet().stream().mapToInt(Integer::intValue).toArray(), writers, inFlight, maxInFlight,
+                    overlaps);
+            return null;
+        }).when(apiService).setLights(anyMapOf(Integer.class, LedState.class));
+        LedControllerImpl controller = new LedControllerImpl(apiService, LedOwnership.Policy.WAIT);
+
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            int thread = t;
+            tasks.add(threads.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    if (thread == 0 && i % 10 == 0) {
+                        controller.turnOffAllLeds();
+                    } else {
+                        int id = group[ThreadLocalRandom.current().nextInt(group.length)];
+                        controller.setLed(id, 0xFF0000);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get(60, TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+
+        assertTrue("overlapping writes: " + overlaps, overlaps.isEmpty());
+        // writes to different LEDs did run side by side
+        assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+        assertEquals(0, controller.getOwnership().ownedIds().length);
+    }
+
+    private static void write(int[] ids, AtomicIntegerArray writers, AtomicInteger inFlight,
+                              AtomicInteger maxInFlight, ConcurrentLinkedQueue<String> overlaps)
+            throws InterruptedException {
+        for (int id : ids) {
+            if (writers.incrementAndGet(id) > 1) {
+                overlaps.add("LED " + id);
+            }
+        }
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        Thread.sleep(1);
+        inFlight.decrementAndGet();
+        for (int id : ids) {
+            writers.decrementAndGet(id);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class LedWatcherTest {
+    private static final Light RED = new Light(46, 0xFF0000, true, true);
+    private static final Light OFF = new Light(47, 0, false, true);
+
+    @Test
+    public void reportsOnlyChangedLeds() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(
+                List.of(RED, OFF),
+                List.of(RED, OFF),
+                List.of(RED, new Light(47, 0x00FF00, true, true)),
+                List.of(RED));
+        LedWatcher watcher = new LedWatcher(apiService, Duration.ofMillis(100), Duration.ofMillis(1000), millis -> { });
+        List<LedChange> changes = new ArrayList<>();
+        watcher.addListener(changes::add);
+
+        watcher.pollOnce();
+        assertEquals(List.of(new LedChange(46, null, RED.state()), new LedChange(47, null, OFF.state())), changes);
+
+        changes.clear();
+        watcher.pollOnce();
+        assertTrue(changes.isEmpty());
+
+        watcher.pollOnce();
+        assertEquals(List.of(new LedChange(47, OFF.state(), new LedState(0x00FF00, true))), changes);
+
+        changes.clear();
+        watcher.pollOnce();
+        assertEquals(List.of(new LedChange(47, new LedState(0x00FF00, true), null)), changes);
+    }
+
+    @Test
+    public void intervalBacksOffWhileIdleAndResetsOnChange() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(
+                List.of(OFF), List.of(OFF), List.of(OFF), List.of(OFF), List.of(OFF), List.of(OFF),
+                List.of(new Light(47, 1, true, true)));
+        LedWatcher watcher = new LedWatcher(apiService, Duration.ofMillis(100), Duration.ofMillis(500), millis -> { });
+
+        List<Long> delays = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            delays.add(watcher.pollOnce());
+        }
+
+        assertEquals(List.of(100L, 200L, 400L, 500L, 500L, 500L, 100L), delays);
+    }
+
+    @Test
+    public void lateSubscribersGetTheCurrentStateAndPollingStopsWithoutListeners() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(List.of(RED));
+        CountDownLatch polled = new CountDownLatch(1);
+        LedWatcher watcher = new LedWatcher(apiService, Duration.ofMillis(10), Duration.ofMillis(10), millis -> {
+            polled.countDown();
+            Thread.sleep(millis);
+        });
+
+        LedWatcher.Subscription first = watcher.subscribe(change -> { });
+        assertTrue(polled.await(5, TimeUnit.SECONDS));
+        List<LedChange> replayed = new ArrayList<>();
+        watcher.subscribe(replayed::add).close();
+        first.close();
+
+        assertEquals(List.of(new LedChange(46, null, RED.state())), replayed);
+        Thread.sleep(50);
+        int polls = mockingDetails(apiService).getInvocations().size();
+        Thread.sleep(100);
+        assertEquals(polls, mockingDetails(apiService).getInvocations().size());
+    }
+
+    @Test
+    public void unexpectedFailureIsReportedAndPollingContinues() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenThrow(new IllegalStateException("bad response")).thenReturn(List.of(RED));
+        List<Long> delays = new CopyOnWriteArrayList<>();
+        List<IOException> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch changed = new CountDownLatch(1);
+        LedWatcher watcher = new LedWatcher(apiService, Duration.ofMillis(10), Duration.ofMillis(40), delays::add);
+
+        LedWatcher.Subscription subscription = watcher.subscribe(new LedChangeListener() {
+            @Override
+            public void onChange(LedChange change) {
+                changed.countDown();
+            }
+
+            @Override
+            public void onError(IOException e) {
+                errors.add(e);
+            }
+        });
+        try {
+            assertTrue(changed.await(5, TimeUnit.SECONDS));
+        } finally {
+            subscription.close();
+        }
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getCause() instanceof IllegalStateException);
+        assertEquals(Long.valueOf(40), delays.get(0));
+    }
+
+    @Test
+    public void failingListenerDoesNotCostTheOthersTheirChanges() throws Exception {
+        ApiService apiService = mock(ApiService.class);
+        when(apiService.listLights(true)).thenReturn(List.of(RED, OFF));
+        LedWatcher watcher = new LedWatcher(apiService, Duration.ofMillis(100), Duration.ofMillis(1000), millis -> { });
+        List<IOException> errors = new ArrayList<>();
+        List<LedChange> changes = new ArrayList<>();
+        watcher.addListener(new LedChangeListener() {
+            @Override
+            public void onChange(LedChange change) {
+                throw new IllegalStateException("broken listener");
+            }
+
+            @Override
+            public void onError(IOException e) {
+                errors.add(e);
+            }
+        });
+        watcher.addListener(changes::add);
+
+        // a successful poll with changes resets the interval even if a listener failed
+        assertEquals(100L, watcher.pollOnce());
+
+        assertEquals(List.of(new LedChange(46, null, RED.state()), new LedChange(47, null, OFF.state())), changes);
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0).getCause() instanceof IllegalStateException);
+    }
+}
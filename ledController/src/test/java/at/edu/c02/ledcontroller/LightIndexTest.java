@@ -0,0 +1,59 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LightIndexTest {
+
+    @Test
+    public void compactIdsUseDenseArray() {
+        List<Light> lights = new ArrayList<>();
+        for (int id = 100; id < 400; id++) {
+            lights.add(new Light(id, id, true, false));
+        }
+
+        LightIndex index = LightIndex.of(lights);
+
+        assertTrue(index.isDense());
+        assertEquals(300, index.size());
+        assertEquals(lights.get(0), index.get(100));
+        assertEquals(lights.get(299), index.get(399));
+        assertNull(index.get(99));
+        assertNull(index.get(400));
+        assertNull(index.get(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void sparseIdsUseHashTable() {
+        List<Light> lights = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lights.add(new Light(i * 100_003 - 50_000_000, i, i % 2 == 0, false));
+        }
+
+        LightIndex index = LightIndex.of(lights);
+
+        assertFalse(index.isDense());
+        assertEquals(1000, index.size());
+        for (Light light : lights) {
+            assertEquals(light, index.get(light.id()));
+        }
+        assertNull(index.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireFailsForUnknownId() {
+        LightIndex.of(List.of(new Light(1, 0, false, false))).require(2);
+    }
+
+    @Test
+    public void emptyResponseHasNoLights() {
+        assertNull(LightIndex.of(List.of()).get(0));
+    }
+}
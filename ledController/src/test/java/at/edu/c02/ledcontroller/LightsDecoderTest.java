@@ -0,0 +1,97 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LightsDecoderTest {
+
+    @Test
+    public void decodesProjectedFieldsAndSkipsTheRest() throws Exception {
+        String json = "{\"lights\": [\n"
+                + "  {\"id\": 46, \"color\": \"#FF0000\", \"on\": true, \"extra\": {\"a\": [1, \"x]}\"]},"
+                + "   \"groupByGroup\": {\"id\": 3, \"name\": \"G\\\"1\"}},\n"
+                + "  {\"id\": 3, \"color\": \"#abc\", \"on\": false, \"groupByGroup\": null},\n"
+                + "  {\"groupByGroup\": {\"name\": null}, \"on\": false, \"color\": \"#000000\", \"id\": 4},\n"
+                + "  {\"id\": 5, \"color\": \"#123456\", \"on\": true, \"note\": \"\\u00e4\\\\\"}\n"
+                + "], \"total\": 4}";
+
+        List<Light> all = decode(json, false);
+        List<Light> grouped = decode(json, true);
+
+        assertEquals(List.of(
+                new Light(46, 0xFF0000, true, true),
+                new Light(3, 0xAABBCC, false, false),
+                new Light(4, 0x000000, false, false),
+                new Light(5, 0x123456, true, false)), all);
+        assertEquals(List.of(new Light(46, 0xFF0000, true, true)), grouped);
+    }
+
+    @Test
+    public void matchesJsonTreeProjection() throws Exception {
+        String json = syntheticPayload(500);
+
+        assertEquals(Light.fromJson(new JSONObject(json), true), decode(json, true));
+        assertEquals(Light.fromJson(new JSONObject(json), false), decode(json, false));
+    }
+
+    @Test
+    public void malformedColorsReadAsBlackInsteadOfFailingTheResponse() throws Exception {
+        String json = "{\"lights\": ["
+                + "{\"id\": 1, \"color\": \"#ff00\", \"on\": true, \"groupByGroup\": {\"name\": \"G\"}},"
+                + "{\"id\": 2, \"color\": \"rebeccapurple\", \"on\": true},"
+                + "{\"id\": 3, \"color\": \"#00ff00\", \"on\": true, \"groupByGroup\": {\"name\": \"G\"}}]}";
+
+        assertEquals(List.of(new Light(1, RgbColor.BLACK, true, true), new Light(3, 0x00FF00, true, true)),
+                decode(json, true));
+        assertEquals(Light.fromJson(new JSONObject(json), false), decode(json, false));
+    }
+
+    @Test
+    public void nonStringColorsReadAsBlack() throws Exception {
+        String json = "{\"lights\": ["
+                + "{\"id\": 1, \"color\": 16711680, \"on\": true},"
+                + "{\"id\": 2, \"color\": true, \"on\": true},"
+                + "{\"id\": 3, \"color\": {\"r\": 255}, \"on\": false}]}";
+
+        assertEquals(List.of(new Light(1, RgbColor.BLACK, true, false), new Light(2, RgbColor.BLACK, true, false),
+                new Light(3, RgbColor.BLACK, false, false)), decode(json, false));
+        assertEquals(Light.fromJson(new JSONObject(json), false), decode(json, false));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedInput() throws Exception {
+        decode("{\"lights\": [{\"id\": 1, \"color\": \"#000", false);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsResponseWithoutLights() throws Exception {
+        decode("{\"errors\": []}", false);
+    }
+
+    private static List<Light> decode(String json, boolean groupedOnly) throws IOException {
+        return LightsDecoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), groupedOnly);
+    }
+
+    static String syntheticPayload(int count) {
+        StringBuilder sb = new StringBuilder("{\"lights\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i)
+                    .append(",\"color\":\"").append(String.format("#%06x", (i * 2654435761L) & 0xFFFFFF)).append('"')
+                    .append(",\"on\":").append(i % 3 == 0)
+                    .append(",\"groupId\":").append(i % 10 == 0 ? String.valueOf(i / 10) : "null")
+                    .append(",\"groupByGroup\":").append(i % 10 == 0 ? "{\"name\":\"Group " + i / 10 + "\"}" : "null")
+                    .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,115 @@
+package at.edu.c02.ledcontroller;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link LedController} at a fixed target rate and reports throughput and latency percentiles.
+ * <p>
+ * Operations are started on their schedule whether or not earlier ones have finished (open loop), and
+ * latency is measured from the scheduled start, so a stalled backend shows up in the tail instead of
+ * silently lowering the request rate.
+ * <p>
+ * Run against the simulator with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=at.edu.c02.ledcontroller.LoadTestHarness
+ * -Dexec.args="<lights> <rate/s> <seconds> <median latency ms> <429 probability>"}.
+ */
+public class LoadTestHarness {
+
+    public interface Operation {
+        void run(LedController controller, int sequence) throws Exception;
+    }
+
+    public record Report(int started, int completed, int failed, double throughputPerSecond,
+                         double p50Millis, double p99Millis, double p999Millis, double maxMillis) {
+        @Override
+        public String toString() {
+            return String.format("%d started, %d completed, %d failed, %.1f ops/s, "
+                            + "latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                    started, completed, failed, throughputPerSecond, p50Millis, p99Millis, p999Millis, maxMillis);
+        }
+    }
+
+    public static Report run(LedController controller, Operation operation, double targetRate, Duration duration)
+            throws InterruptedException {
+        int total = (int) Math.max(1, Math.round(targetRate * duration.toMillis() / 1000.0));
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / targetRate);
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong lastFinish = new AtomicLong();
+
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < total; i++) {
+                long scheduled = start + i * intervalNanos;
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                int sequence = i;
+                workers.execute(() -> {
+                    try {
+                        operation.run(controller, sequence);
+                        long finished = System.nanoTime();
+                        latencies[completed.getAndIncrement()] = finished - scheduled;
+                        lastFinish.accumulateAndGet(finished, Math::max);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                });
+            }
+        }
+
+        int done = completed.get();
+        long[] sorted = Arrays.copyOf(latencies, done);
+        Arrays.sort(sorted);
+        double elapsedSeconds = Math.max(1, lastFinish.get() - start) / 1e9;
+        return new Report(total, done, failed.get(), done / elapsedSeconds,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99), percentileMillis(sorted, 0.999),
+                done == 0 ? 0 : sorted[done - 1] / 1e6);
+    }
+
+    static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int lights = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        double medianLatencyMillis = args.length > 3 ? Double.parseDouble(args[3]) : 20;
+        double throttleProbability = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+        int groupSize = Math.min(lights, 8);
+
+        try (HasuraSimulator simulator = new HasuraSimulator(lights, groupSize)) {
+            simulator.latency(HasuraSimulator.Latency.logNormal(medianLatencyMillis, 0.6))
+                    .throttle(throttleProbability, 1);
+            ApiService apiService = new ApiServiceImpl(simulator.baseUrl(), new JdkHttpTransport(),
+                    new RateLimiter(rate * 2, (int) Math.ceil(rate)));
+            LedController controller = new LedControllerImpl(apiService);
+
+            System.out.printf("Driving setLed at %.0f/s for %d s against %d simulated lights (median %.0f ms, %.1f%% 429)%n",
+                    rate, seconds, lights, medianLatencyMillis, throttleProbability * 100);
+            Operation setRandomLed = (c, sequence) -> c.setLed(1 + sequence % groupSize,
+                    ThreadLocalRandom.current().nextInt(0x1000000));
+            // let the JIT and the connection pool settle before measuring
+            run(controller, setRandomLed, rate, Duration.ofSeconds(2));
+            long warmupRequests = simulator.requestCount();
+            Report report = run(controller, setRandomLed, rate, Duration.ofSeconds(seconds));
+            System.out.println(report);
+            System.out.println((simulator.requestCount() - warmupRequests) + " requests served, " + simulator.throttledCount() + " throttled");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    // Sleeping advances the fake clock, so the tests run instantly and see exact wait times
+    private long nowNanos = 0;
+    private final List<Long> sleeps = new ArrayList<>();
+    private final Sleeper sleeper = millis -> {
+        sleeps.add(millis);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    };
+
+    @Test
+    public void burstPassesWithoutWaiting() throws Exception {
+        RateLimiter limiter = new RateLimiter(2.0, 8, () -> nowNanos, sleeper);
+
+        for (int i = 0; i < 8; i++) {
+            limiter.acquire();
+        }
+
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void waitsForRefillWhenBucketIsEmpty() throws Exception {
+        RateLimiter limiter = new RateLimiter(2.0, 1, () -> nowNanos, sleeper);
+
+        limiter.acquire();
+        limiter.acquire();
+
+        assertEquals(List.of(500L), sleeps);
+    }
+
+    @Test
+    public void idleTimeRefillsTheBucket() throws Exception {
+        RateLimiter limiter = new RateLimiter(2.0, 4, () -> nowNanos, sleeper);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+
+        nowNanos += TimeUnit.SECONDS.toNanos(10);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void throttlingBlocksForRetryAfterAndHalvesRate() throws Exception {
+        RateLimiter limiter = new RateLimiter(2.0, 8, () -> nowNanos, sleeper);
+
+        limiter.onThrottled(3000L);
+        limiter.acquire();
+
+        assertEquals(1.0, limiter.getRatePerSecond(), 1e-9);
+        long waited = sleeps.stream().mapToLong(Long::longValue).sum();
+        // blocked for Retry-After, then one token at the halved rate
+        assertEquals(4000L, waited);
+    }
+
+    @Test
+    public void tryAcquireNeverWaits() {
+        RateLimiter limiter = new RateLimiter(2.0, 1, () -> nowNanos, sleeper);
+
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(500);
+        assertTrue(limiter.tryAcquire());
+
+        limiter.onThrottled(1000L);
+        nowNanos += TimeUnit.SECONDS.toNanos(10);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void tryAcquireWithTimeoutGivesUpInsteadOfSleepingPastIt() throws Exception {
+        RateLimiter limiter = new RateLimiter(2.0, 1, () -> nowNanos, sleeper);
+        limiter.acquire();
+
+        // the next token is 500 ms away
+        assertFalse(limiter.tryAcquire(400, TimeUnit.MILLISECONDS));
+        assertTrue(sleeps.isEmpty());
+        assertTrue(limiter.tryAcquire(600, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(500L), sleeps);
+
+        limiter.onThrottled(5000L);
+        assertFalse(limiter.tryAcquire(1, TimeUnit.SECONDS));
+        assertEquals(List.of(500L), sleeps);
+    }
+
+    @Test
+    public void interactiveRequestIsServedBeforeWaitingBackgroundRequest() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        ParkingSleeper parking = new ParkingSleeper(clock);
+        RateLimiter limiter = new RateLimiter(2.0, 1, clock::get, parking);
+        limiter.acquire();
+
+        AtomicBoolean backgroundGotToken = new AtomicBoolean();
+        Thread background = parking.startParked(() -> backgroundGotToken.set(
+                limiter.tryAcquire(10, TimeUnit.SECONDS, RequestPriority.BACKGROUND)));
+
+        // the next token goes to the later interactive request
+        assertTrue(limiter.tryAcquire(1, TimeUnit.SECONDS, RequestPriority.INTERACTIVE));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), clock.get());
+
+        parking.release();
+        background.join(5000);
+        assertTrue(backgroundGotToken.get());
+    }
+
+    @Test
+    public void waitingBackgroundRequestAgesAheadOfNewRequests() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        ParkingSleeper parking = new ParkingSleeper(clock);
+        RateLimiter limiter = new RateLimiter(2.0, 1, clock::get, parking);
+        limiter.acquire();
+
+        AtomicBoolean backgroundGotToken = new AtomicBoolean();
+        Thread background = parking.startParked(() -> backgroundGotToken.set(
+                limiter.tryAcquire(1, TimeUnit.MINUTES, RequestPriority.BACKGROUND)));
+
+        // waiting one second is not enough to overtake a normal request
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS, RequestPriority.NORMAL));
+
+        // after two aging periods the background request is in the top lane and first in line
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        assertFalse(limiter.tryAcquire(0, TimeUnit.MILLISECONDS, RequestPriority.INTERACTIVE));
+        assertFalse(limiter.tryAcquire());
+
+        parking.release();
+        background.join(5000);
+        assertTrue(backgroundGotToken.get());
+    }
+
+    @Test
+    public void backgroundLeavesOneTokenOfTheBurst() throws Exception {
+        RateLimiter limiter = new RateLimiter(2.0, 3, () -> nowNanos, sleeper);
+
+        assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS, RequestPriority.BACKGROUND));
+        assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS, RequestPriority.BACKGROUND));
+        assertFalse(limiter.tryAcquire(0, TimeUnit.MILLISECONDS, RequestPriority.BACKGROUND));
+        assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS, RequestPriority.INTERACTIVE));
+    }
+
+    /**
+     * Advances the clock like {@link #sleeper}, except for the thread started by {@link #startParked}: that
+     * one blocks in its first sleep until {@link #release()}, so it stays registered as a waiter.
+     */
+    private static final class ParkingSleeper implements Sleeper {
+        private final AtomicLong clock;
+        private final CountDownLatch parked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile Thread parkedThread;
+
+        ParkingSleeper(AtomicLong clock) {
+            this.clock = clock;
+        }
+
+        Thread startParked(Acquisition acquisition) throws InterruptedException {
+            Thread thread = new Thread(() -> {
+                try {
+                    acquisition.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            parkedThread = thread;
+            thread.start();
+            assertTrue(parked.await(5, TimeUnit.SECONDS));
+            return thread;
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            if (Thread.currentThread() == parkedThread && released.getCount() > 0) {
+                parked.countDown();
+                released.await();
+                return;
+            }
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private interface Acquisition {
+        void run() throws InterruptedException;
+    }
+
+    @Test
+    public void successGrowsRateBackSlowlyUpToMaximum() {
+        RateLimiter limiter = new RateLimiter(2.0, 8, () -> nowNanos, sleeper);
+        limiter.onThrottled(0L);
+        limiter.onThrottled(0L);
+        assertEquals(0.5, limiter.getRatePerSecond(), 1e-9);
+
+        limiter.onSuccess();
+        assertEquals(0.55, limiter.getRatePerSecond(), 1e-9);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+        assertEquals(2.0, limiter.getRatePerSecond(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void agingPeriodMustBePositive() {
+        RateLimiter.agingNanos(0L);
+    }
+}
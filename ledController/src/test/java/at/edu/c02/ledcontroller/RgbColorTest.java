@@ -0,0 +1,60 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RgbColorTest {
+
+    @Test
+    public void parsesLongAndShortHexCaseInsensitive() {
+        assertEquals(0xFF8800, RgbColor.parse("#ff8800"));
+        assertEquals(0xFF8800, RgbColor.parse("#FF8800"));
+        assertEquals(0xFF8800, RgbColor.parse("#f80"));
+        assertEquals(0, RgbColor.parse("#000"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedColor() {
+        RgbColor.parse("#ff00");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonHexDigits() {
+        RgbColor.parse("#gg0000");
+    }
+
+    @Test
+    public void parseOrDefaultFallsBackInsteadOfThrowing() {
+        assertEquals(0x123456, RgbColor.parseOrDefault("#123456", RgbColor.BLACK));
+        assertEquals(RgbColor.BLACK, RgbColor.parseOrDefault("#ff00", RgbColor.BLACK));
+        assertEquals(RgbColor.BLACK, RgbColor.parseOrDefault("red", RgbColor.BLACK));
+        assertEquals(RgbColor.WHITE, RgbColor.parseOrDefault(null, RgbColor.WHITE));
+    }
+
+    @Test
+    public void formatsAndCachesHexStrings() {
+        assertEquals("#00ffff", RgbColor.toHex(0x00FFFF));
+        assertEquals("#000000", RgbColor.toHex(RgbColor.BLACK));
+        assertSame(RgbColor.toHex(0x123456), RgbColor.toHex(0x123456));
+    }
+
+    @Test
+    public void writesHexIntoBuffer() {
+        byte[] buffer = new byte[9];
+        RgbColor.writeHex(0xABCDEF, buffer, 1);
+        assertEquals("#abcdef", new String(buffer, 1, 7));
+    }
+
+    @Test
+    public void mixColorsMatchesFormattedString() {
+        for (int flags = 0; flags < 8; flags++) {
+            boolean h = (flags & 4) != 0;
+            boolean m = (flags & 2) != 0;
+            boolean s = (flags & 1) != 0;
+            String expected = String.format("#%02x%02x%02x", h ? 0xFF : 0, m ? 0xFF : 0, s ? 0xFF : 0);
+            assertEquals(expected, LedController.mixColors(h, m, s));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SceneTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndReadRoundTrip() throws Exception {
+        Scene scene = Scene.of(List.of(
+                new Light(53, 0x00FF00, true, true),
+                new Light(46, 0xFF0000, true, true),
+                new Light(47, 0x123456, false, true)));
+        Path file = folder.getRoot().toPath().resolve("scene.bin");
+
+        scene.write(file);
+        Scene read = Scene.read(file);
+
+        assertEquals(12 + 3 * 8, Files.size(file));
+        assertEquals(scene, read);
+        assertEquals(new LedState(0x123456, false), read.state(47));
+        assertNull(read.state(48));
+        assertEquals(46, read.ids()[0]);
+    }
+
+    @Test
+    public void diffContainsOnlyChangedAndMissingLeds() {
+        Map<Integer, LedState> saved = new LinkedHashMap<>();
+        saved.put(46, new LedState("#ff0000", true));
+        saved.put(47, LedState.OFF);
+        saved.put(48, new LedState("#0000ff", true));
+        Map<Integer, LedState> live = new LinkedHashMap<>();
+        live.put(45, new LedState("#ffffff", true));
+        live.put(46, new LedState("#ff0000", true));
+        live.put(47, new LedState("#000000", true));
+
+        Map<Integer, LedState> changes = Scene.of(saved).diff(Scene.of(live));
+
+        assertEquals(Map.of(47, LedState.OFF, 48, new LedState("#0000ff", true)), changes);
+    }
+
+    @Test
+    public void rejectsFilesThatAreNoScenes() throws Exception {
+        Path file = folder.newFile("notes.txt").toPath();
+        Files.writeString(file, "hello world, not a scene");
+
+        try {
+            Scene.read(file);
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a scene file"));
+            return;
+        }
+        throw new AssertionError("expected an IOException");
+    }
+}
@@ -0,0 +1,123 @@
+package at.edu.c02.ledcontroller;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class ShadowStateApiServiceTest {
+
+    @Test
+    public void repeatedSetLightIsSentOnce() throws Exception {
+        ApiService delegate = mock(ApiService.class);
+        ShadowStateApiService apiService = new ShadowStateApiService(delegate);
+
+        apiService.setLight(46, "#FF0000", true);
+        apiService.setLight(46, "#ff0000", true);
+
+        verify(delegate, times(1)).setLight(46, "#FF0000", true);
+        assertEquals(1, apiService.getSuppressedWrites());
+    }
+
+    @Test
+    public void getLightsFillsShadowState() throws Exception {
+        ApiService delegate = mock(ApiService.class);
+        when(delegate.getLights()).thenReturn(new JSONObject().put("lights", new JSONArray()
+                .put(new JSONObject().put("id", 46).put("color", "#000").put("on", false))));
+        ShadowStateApiService apiService = new ShadowStateApiService(delegate);
+
+        apiService.getLights();
+        apiService.setLight(46, "#000000", false);
+
+        assertEquals(LedState.OFF, apiService.getCachedState(46));
+        verify(delegate, never()).setLight(anyInt(), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void setLightsSendsOnlyChangedEntries() throws Exception {
+        ApiService delegate = mock(ApiService.class);
+        ShadowStateApiService apiService = new ShadowStateApiService(delegate);
+        apiService.setLights(frame("#000000", false, 46, 47, 48));
+
+        Map<Integer, LedState> next = frame("#000000", false, 46, 47, 48);
+        next.put(47, new LedState("#00ff00", true));
+        apiService.setLights(next);
+        apiService.setLights(next);
+
+        verify(delegate).setLights(frame("#000000", false, 46, 47, 48));
+        verify(delegate).setLights(frame("#00ff00", true, 47));
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    public void forceAndInvalidateResendWrites() throws Exception {
+        ApiService delegate = mock(ApiService.class);
+        ShadowStateApiService apiService = new ShadowStateApiService(delegate);
+
+        apiService.setLight(46, "#ff0000", true);
+        apiService.setLight(46, "#ff0000", true, true);
+        apiService.invalidate(46);
+        apiService.setLight(46, "#ff0000", true);
+        apiService.invalidate();
+        apiService.setLights(frame("#ff0000", true, 46));
+
+        verify(delegate, times(3)).setLight(46, "#ff0000", true);
+        verify(delegate).setLights(frame("#ff0000", true, 46));
+    }
+
+    @Test
+    public void failedWriteLeavesLedUnknown() throws Exception {
+        ApiService delegate = mock(ApiService.class);
+        ShadowStateApiService apiService = new ShadowStateApiService(delegate);
+        apiService.setLight(46, "#000000", false);
+        when(delegate.setLight(46, "#ff0000", true)).thenThrow(new IOException("boom"));
+
+        try {
+            apiService.setLight(46, "#ff0000", true);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        assertNull(apiService.getCachedState(46));
+    }
+
+    @Test
+    public void clockAndSpinEffectsSendAboutHalfTheWrites() throws Exception {
+        ApiService delegate = mock(ApiService.class);
+        JSONArray lights = new JSONArray();
+        for (int id = 46; id <= 53; id++) {
+            lights.put(new JSONObject().put("id", id).put("color", "#000000").put("on", false)
+                    .put("groupByGroup", new JSONObject().put("name", "G")));
+        }
+        when(delegate.listLights(true)).thenReturn(Light.fromJson(new JSONObject().put("lights", lights), true));
+        ShadowStateApiService apiService = new ShadowStateApiService(delegate);
+        LedControllerImpl controller = new LedControllerImpl(apiService, millis -> { });
+
+        for (int second = 0; second < 60; second++) {
+            controller.showTime(10, 15, second);
+        }
+        controller.spinningLed("#ff0000", 2, 0L);
+
+        long total = apiService.getSentWrites() + apiService.getSuppressedWrites();
+        assertTrue("sent " + apiService.getSentWrites() + " of " + total,
+                apiService.getSentWrites() * 2 <= total);
+    }
+
+    private static Map<Integer, LedState> frame(String color, boolean on, int... ids) {
+        Map<Integer, LedState> frame = new LinkedHashMap<>();
+        for (int id : ids) {
+            frame.put(id, new LedState(color, on));
+        }
+        return frame;
+    }
+}
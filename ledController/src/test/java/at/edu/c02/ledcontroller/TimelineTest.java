@@ -0,0 +1,121 @@
+package at.edu.c02.ledcontroller;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class TimelineTest {
+    private static final int[] IDS = {46, 47, 48, 49, 50, 51, 52, 53};
+
+    @Test
+    public void recordsOnlyChangedLeds() {
+        Timeline timeline = Timeline.record(new SpinningLedAnimation(IDS, "#ff0000", 2), 100L);
+
+        assertEquals(17, timeline.frameCount());
+        assertEquals(8, timeline.frame(0).size());
+        assertEquals(2, timeline.frame(1).size());
+        // the last frame turns everything off, but only the lit LED is not off yet
+        assertEquals(Map.of(53, LedState.OFF), timeline.frame(16));
+        assertEquals(8 + 15 * 2 + 1, timeline.changeCount());
+    }
+
+    @Test
+    public void writeAndReadRoundTrip() throws Exception {
+        Timeline timeline = Timeline.record(new SpinningLedAnimation(IDS, "#12ab34", 3), 250L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        timeline.write(out);
+        Timeline read = Timeline.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(250L, read.frameMillis());
+        assertEquals(timeline.frameCount(), read.frameCount());
+        for (int i = 0; i < timeline.frameCount(); i++) {
+            assertEquals(timeline.frame(i), read.frame(i));
+        }
+        // 20 byte header, 2 bytes per record header, 4 bytes per change
+        assertEquals(20 + 25 * 2 + timeline.changeCount() * 4, out.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedTimeline() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Timeline.record(new SpinningLedAnimation(IDS, "#ff0000", 1), 100L).write(out);
+        byte[] bytes = out.toByteArray();
+
+        Timeline.read(new ByteArrayInputStream(bytes, 0, bytes.length - 2));
+    }
+
+    @Test
+    public void rejectsHeadersWithAnImplausibleFrameCount() throws Exception {
+        for (int frameCount : new int[]{2_000_000_000, Animation.ENDLESS}) {
+            try {
+                Timeline.read(new ByteArrayInputStream(header(frameCount, 0)));
+                fail("frame count " + frameCount + " was accepted");
+            } catch (IOException expected) {
+                // neither allocates per frame nor turns into an endless replay
+            }
+        }
+    }
+
+    @Test
+    public void emptyFramesTakeNoSpace() throws Exception {
+        Timeline read = Timeline.read(new ByteArrayInputStream(header(Timeline.MAX_FRAMES, 0)));
+
+        assertEquals(Timeline.MAX_FRAMES, read.frameCount());
+        assertEquals(Map.of(), read.frame(Timeline.MAX_FRAMES - 1));
+        assertEquals(0, read.changeCount());
+    }
+
+    @Test
+    public void replaySendsRecordedFramesOnSchedule() throws Exception {
+        long[] nowNanos = {0};
+        List<Long> sleeps = new ArrayList<>();
+        Sleeper sleeper = millis -> {
+            sleeps.add(millis);
+            nowNanos[0] += TimeUnit.MILLISECONDS.toNanos(millis);
+        };
+        ApiService apiService = mock(ApiService.class);
+        List<Map<Integer, LedState>> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Map<Integer, LedState> frame = (Map<Integer, LedState>) invocation.getArguments()[0];
+            written.add(new LinkedHashMap<>(frame));
+            return null;
+        }).when(apiService).setLights(anyMapOf(Integer.class, LedState.class), any(Deadline.class));
+        Timeline timeline = Timeline.record(new SpinningLedAnimation(IDS, "#ff0000", 1), 100L);
+
+        AnimationStats stats = new AnimationEngine(apiService, sleeper, () -> nowNanos[0])
+                .play(timeline, timeline.frameMillis());
+
+        assertEquals(9, stats.framesSent());
+        assertEquals(8, sleeps.size());
+        assertTrue(sleeps.stream().allMatch(millis -> millis == 100L));
+        for (int i = 0; i < timeline.frameCount(); i++) {
+            assertEquals(timeline.frame(i), written.get(i));
+        }
+    }
+
+    private static byte[] header(int frameCount, int records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x4C454454);
+        out.writeInt(1);
+        out.writeInt(100);
+        out.writeInt(frameCount);
+        out.writeInt(records);
+        return bytes.toByteArray();
+    }
+}